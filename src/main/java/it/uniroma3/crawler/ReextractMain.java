@@ -0,0 +1,190 @@
+package it.uniroma3.crawler;
+
+import static it.uniroma3.crawler.util.HtmlUtils.makeWebClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebConnection;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import it.uniroma3.crawler.actors.CrawlPage;
+import it.uniroma3.crawler.model.DataType;
+import it.uniroma3.crawler.model.PageClass;
+import it.uniroma3.crawler.modeler.ModelerService;
+import it.uniroma3.crawler.settings.CrawlerSettings;
+import it.uniroma3.crawler.settings.CrawlerSettings.SeedConfig;
+import it.uniroma3.crawler.util.FileUtils;
+import it.uniroma3.crawler.util.HtmlUtils;
+import it.uniroma3.crawler.util.PageStore;
+import it.uniroma3.crawler.util.RecordFiles;
+import it.uniroma3.crawler.util.RecordSink;
+import it.uniroma3.crawler.util.RepositoryIndex;
+
+/**
+ * Extracts again the data records of the pages saved by a previous crawl,
+ * with the current model of each website and without any HTTP request.
+ * <br>
+ * The saved pages of each website configured in <i>master.conf</i> are read
+ * sequentially from its repository (see {@link RepositoryIndex}) and restored
+ * from the page store, then the data of their PageClass are extracted in
+ * parallel by the given number of threads. The records are written with the
+ * format of a crawl (see {@link RecordFiles}, or {@link RecordSink#COLUMNAR}
+ * according to <code>recordformat</code>) to the record directory of
+ * the website, suffixed with <i>_reextracted</i>.
+ */
+public class ReextractMain {
+	public static final String OUTPUT_SUFFIX = "_reextracted";
+
+	private final int threads;
+	private final String format;
+	private final int rowGroup;
+
+	public static void main(String[] args) {
+		int threads = (args.length>0) ?
+				Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		Config config = ConfigFactory.load("master");
+		CrawlerSettings set = new CrawlerSettings(config);
+		ReextractMain reextractor = new ReextractMain(threads, set.recordformat, set.rowgroup);
+		reextractor.reextract(config);
+	}
+
+	public ReextractMain(int threads) {
+		this(threads, RecordSink.TSV, 0);
+	}
+
+	public ReextractMain(int threads, String format, int rowGroup) {
+		this.threads = Math.max(1, threads);
+		this.format = format;
+		this.rowGroup = rowGroup;
+	}
+
+	/**
+	 * Re-extracts the records of every website of the given configuration.
+	 * @param config the configuration of the crawler
+	 */
+	public void reextract(Config config) {
+		CrawlerSettings set = new CrawlerSettings(config);
+		for (SeedConfig seed : set.seeds) {
+			try {
+				long start = System.currentTimeMillis();
+				long[] counts = reextract(seed);
+				System.out.println("Re-extracted "+seed.site+": "+counts[0]+" pages, "
+						+counts[1]+" records, "+counts[2]+" failures in "
+						+(System.currentTimeMillis()-start)+" ms");
+			} catch (IOException e) {
+				System.err.println("Can't re-extract "+seed.site+": "+e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Re-extracts the records of the website of the given configuration.
+	 * @param seed the website configuration
+	 * @return the number of pages read, of records extracted and of pages
+	 * that could not be restored
+	 * @throws IOException if the model, the repository or the output cannot be read or written
+	 */
+	public long[] reextract(SeedConfig seed) throws IOException {
+		PageClass root = ModelerService.loadModel(seed);
+		Map<String, PageClass> classes = new HashMap<>();
+		Map<String, Map<String, DataType>> dataTypes = new HashMap<>();
+		for (PageClass pclass : root.getDescendants()) {
+			classes.put(pclass.getName(), pclass);
+			dataTypes.put(pclass.getName(), pclass.xPathToData());
+		}
+
+		String output = FileUtils.getRecordDirectory(seed.site)+OUTPUT_SUFFIX;
+		clear(output);
+		RecordSink files = RecordSink.create(format, site -> output, 64*1024, rowGroup);
+		List<WebClient> clients = new ArrayList<>();
+		ThreadLocal<WebClient> client = ThreadLocal.withInitial(() -> {
+			WebClient offline = makeWebClient(false);
+			offline.setWebConnection(new OfflineConnection());
+			synchronized (clients) {
+				clients.add(offline);
+			}
+			return offline;
+		});
+		AtomicLong pages = new AtomicLong(), records = new AtomicLong(), failures = new AtomicLong();
+
+		// a bounded queue: the repository is read no faster than the pages are extracted
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(threads*4), new ThreadPoolExecutor.CallerRunsPolicy());
+		try {
+			new RepositoryIndex(seed.site).forEach(entry -> {
+				Map<String, DataType> data = dataTypes.get(entry.getPageClass());
+				if (data==null || data.isEmpty()) return;
+				pages.incrementAndGet();
+				pool.execute(() -> {
+					try {
+						HtmlPage html = HtmlUtils.restorePage(PageStore.read(entry.getFilePath()),
+								entry.getUrl(), client.get());
+						List<String> record = CrawlPage.getDataRecord(html, data);
+						if (!record.isEmpty()) {
+							files.write(classes.get(entry.getPageClass()), entry.getUrl(),
+									record.toArray(new String[record.size()]));
+							records.incrementAndGet();
+						}
+					} catch (Exception e) {
+						failures.incrementAndGet();
+					}
+				});
+			});
+		} finally {
+			pool.shutdown();
+			try {
+				pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			files.close();
+			synchronized (clients) {
+				clients.forEach(WebClient::close);
+			}
+		}
+		return new long[] {pages.get(), records.get(), failures.get()};
+	}
+
+	/* deletes the output of a previous re-extraction */
+	private void clear(String output) throws IOException {
+		Path dir = Paths.get(output);
+		if (!Files.exists(dir)) return;
+		try (Stream<Path> walk = Files.walk(dir)) {
+			walk.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	/**
+	 * Refuses every request: restoring a page must not load its frames
+	 * or any other resource from the web.
+	 */
+	private static class OfflineConnection implements WebConnection {
+		@Override
+		public WebResponse getResponse(WebRequest request) throws IOException {
+			throw new IOException("offline: "+request.getUrl());
+		}
+
+		@Override
+		public void close() {}
+	}
+
+}
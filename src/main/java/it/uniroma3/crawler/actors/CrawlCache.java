@@ -2,6 +2,7 @@ package it.uniroma3.crawler.actors;
 
 import static akka.pattern.PatternsCS.ask;
 import static akka.pattern.PatternsCS.pipe;
+import static it.uniroma3.crawler.util.Commands.ERROR;
 import static it.uniroma3.crawler.util.Commands.REPOSITORY;
 import static it.uniroma3.crawler.util.Commands.SAVED;
 
@@ -11,9 +12,12 @@ import akka.actor.AbstractLoggingActor;
 import akka.actor.ActorRef;
 import akka.actor.ActorSelection;
 import akka.actor.Props;
+import it.uniroma3.crawler.messages.FailedURLMsg;
 import it.uniroma3.crawler.messages.SaveMsg;
 import it.uniroma3.crawler.messages.StopMsg;
 import it.uniroma3.crawler.model.CrawlURL;
+import it.uniroma3.crawler.util.CrawlMetrics;
+import it.uniroma3.crawler.util.Metrics;
 
 public class CrawlCache extends AbstractLoggingActor {
 	private final int id;
@@ -54,15 +58,18 @@ public class CrawlCache extends AbstractLoggingActor {
 	private void requestSave(CrawlURL curl) {
 		String url = curl.getStringUrl();
 		ActorSelection repository = context().actorSelection(REPOSITORY);
+		CrawlMetrics metrics = Metrics.MetricsProvider.get(context().system());
+		long start = System.currentTimeMillis();
 		
 		CompletableFuture<Object> future = 
 				ask(repository, new SaveMsg(url), 100000)
 				.toCompletableFuture();
 		
 		CompletableFuture<ResultMsg> result = future.thenApply(v -> {
+			metrics.record(CrawlMetrics.SAVE, System.currentTimeMillis()-start);
 			Short code = (Short) future.join();
 			return new ResultMsg(curl,code);
-		});
+		}).exceptionally(e -> new ResultMsg(curl, ERROR)); // no reply in time
 		pipe(result, context().dispatcher()).to(self());
 	}
 	
@@ -71,9 +78,12 @@ public class CrawlCache extends AbstractLoggingActor {
 		if (msg.getCode()==SAVED)
 			extractor.tell(curl, self());
 		else {
+			log().warning("SAVE: FAILED "+curl.getStringUrl());
 			// Stop crawlPage actor
 			context().actorSelection(REPOSITORY)
 			.tell(new StopMsg(curl.getStringUrl()), self());
+			context().actorSelection("../..")
+			.tell(new FailedURLMsg(curl.getStringUrl()), self());
 		}
 	}
 
@@ -1,94 +1,88 @@
 package it.uniroma3.crawler.actors;
 
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
-
-import static java.nio.file.Files.exists;
-import static java.nio.file.Files.createDirectories;
+import static it.uniroma3.crawler.util.Commands.FLUSH;
 
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 import akka.actor.AbstractLoggingActor;
+import akka.actor.Cancellable;
 import it.uniroma3.crawler.model.CrawlURL;
 import it.uniroma3.crawler.model.PageClass;
+import it.uniroma3.crawler.settings.CrawlerSettings;
+import it.uniroma3.crawler.settings.Settings;
+import it.uniroma3.crawler.util.ColumnarRecordFiles;
 import it.uniroma3.crawler.util.FileUtils;
+import it.uniroma3.crawler.util.RecordFiles;
+import it.uniroma3.crawler.util.RecordSink;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
 
+/**
+ * Writes the data records extracted from the crawled pages, one file for each
+ * {@link PageClass}, tab-separated (see {@link RecordFiles}) or columnar
+ * (see {@link ColumnarRecordFiles}) according to <code>recordformat</code>.
+ * <br>
+ * Each file is opened once and kept open by a buffered writer: the buffer is
+ * written to the file whenever it is full, every <code>writerflush</code>
+ * milliseconds if any record was added, and when the actor stops.
+ */
 public class CrawlDataWriter extends AbstractLoggingActor {
-	
+	private final RecordSink files;
+	private final long flushInterval;
+	private Cancellable flushTick;
+
+	public CrawlDataWriter() {
+		CrawlerSettings set = Settings.SettingsProvider.get(context().system());
+		this.files = RecordSink.create(set.recordformat, FileUtils::getRecordDirectory,
+				Math.max(1, set.writerbuffer)*1024, set.rowgroup);
+		this.flushInterval = set.writerflush;
+	}
+
+	@Override
+	public void preStart() {
+		if (flushInterval>0) {
+			FiniteDuration interval = Duration.create(flushInterval, TimeUnit.MILLISECONDS);
+			flushTick = context().system().scheduler().schedule(interval, interval,
+					self(), FLUSH, context().dispatcher(), self());
+		}
+	}
+
+	@Override
+	public void postStop() {
+		if (flushTick!=null) flushTick.cancel();
+		try {
+			files.close();
+		} catch (IOException e) {
+			log().error("Can't close record files");
+		}
+	}
+
 	@Override
 	public Receive createReceive() {
 		return receiveBuilder()
 		.match(CrawlURL.class, this::write)
+		.matchEquals(FLUSH, f -> flush())
 		.build();
 	}
-	
+
 	private void write(CrawlURL curl) {
-		PageClass src = curl.getPageClass();
 		String[] record = curl.getRecord();
 		if (record!=null) {
-						
-			String[] newRec = new String[record.length+1];
-			newRec[0] = curl.getStringUrl();
-			for (int i=0;i<record.length;i++) {
-				newRec[i+1] = record[i];
+			try {
+				files.write(curl.getPageClass(), curl.getStringUrl(), record);
+			} catch (IOException e) {
+				log().error("Can't save record to csv");
 			}
-			
-			String output = FileUtils.getRecordDirectory(src.getDomain());
-			Path dir = Paths.get(output);
-	    	if (!exists(dir)) {
-				try {
-					createDirectories(dir);
-				} catch (IOException e) {
-					log().error("Can't create output directory");
-					return;
-				}
-	    	}
-			String file = dir+"/"+src.getName()+".csv";
-
-			if (!exists(Paths.get(file))) // save file header
-				saveRecord(src.getDataFieldNames(), file);
-			saveRecord(newRec, file);
-			
-			//TODO
-			//saveWARC(curl)
 		}
 	}
-	
-	private void saveRecord(String[] record, String file) {
-		try (Writer out = new OutputStreamWriter(new FileOutputStream(file, true),
-				StandardCharsets.UTF_8)) {
-			if (record.length==2 && record[1].contains("\t"))
-				writeMultipleRecords(out, record);
-			else
-				writeSingleRecord(out, record);
+
+	private void flush() {
+		try {
+			files.flush();
 		} catch (IOException e) {
-			log().error("Can't save record to csv");
-		}
-	}
-	
-	private void writeSingleRecord(Writer csvOutput, String[] record) 
-			throws IOException {
-		int len = record.length;
-		for (int i=0;i<len;i++) {
-			csvOutput.write(record[i]);
-			if (i<len-1)
-				csvOutput.write("\t");
-		}
-		if (len>0) csvOutput.write("\n");
-		csvOutput.close();
-	}
-	
-	private void writeMultipleRecords(Writer csvOutput, String[] records) 
-			throws IOException {
-		for (String r : records[1].split("\t")) {
-			csvOutput.write(records[0]+"\t"+r);
-			csvOutput.write("\n");
+			log().error("Can't flush record files");
 		}
-		csvOutput.close();
 	}
 
 }
@@ -2,13 +2,14 @@ package it.uniroma3.crawler.actors;
 
 import static akka.pattern.PatternsCS.ask;
 import static akka.pattern.PatternsCS.pipe;
-import static java.util.concurrent.CompletableFuture.allOf;
 import static java.util.concurrent.CompletableFuture.completedFuture;
 
 import static it.uniroma3.crawler.util.Commands.REPOSITORY;
 
 import static it.uniroma3.crawler.factories.CrawlURLFactory.copy;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -19,7 +20,10 @@ import akka.actor.ActorSelection;
 import akka.actor.Props;
 import it.uniroma3.crawler.messages.*;
 import it.uniroma3.crawler.model.CrawlURL;
+import it.uniroma3.crawler.model.DataType;
 import it.uniroma3.crawler.model.PageClass;
+import it.uniroma3.crawler.util.CrawlMetrics;
+import it.uniroma3.crawler.util.Metrics;
 
 public class CrawlExtractor extends AbstractLoggingActor {
 	private final int id;
@@ -66,39 +70,61 @@ public class CrawlExtractor extends AbstractLoggingActor {
 	private void extract(CrawlURL curl) {
 		PageClass src = curl.getPageClass();
 
-		String url = curl.getStringUrl();
-
 		ActorSelection repository = context().actorSelection(REPOSITORY);
-		CompletableFuture<Object> links, data;
-
-		if (!src.isEndPage())
-			links = ask(repository,
-					new ExtractLinksMsg(url, src.getNavigationXPaths(), src.getFormXPaths())
-					, 10000).toCompletableFuture();
-		else
-			links = completedFuture(new ExtractedLinksMsg());
+		CrawlMetrics metrics = Metrics.MetricsProvider.get(context().system());
+		long start = System.currentTimeMillis();
+		CompletableFuture<Object> extracted;
 
-		if (src.isDataPage())
-			data = ask(repository, 
-					new ExtractDataMsg(url, src.xPathToData())
-					, 10000).toCompletableFuture();
+		if (!src.isEndPage() || src.isDataPage())
+			extracted = ask(repository, extractMsg(curl), 10000).toCompletableFuture();
 		else
-			data = completedFuture(new ExtractedDataMsg());
+			extracted = completedFuture(new ExtractedMsg());
 
-		CompletableFuture<ResultMsg> result = allOf(links, data).thenApply(v -> {
-			ExtractedLinksMsg msg1 = (ExtractedLinksMsg) links.join();
-			ExtractedDataMsg msg2 = (ExtractedDataMsg) data.join();
-			return new ResultMsg(curl, msg1.getLinks(), msg2.getRecord());
+		CompletableFuture<ResultMsg> result = extracted.thenApply(reply -> {
+			metrics.record(CrawlMetrics.EXTRACT, System.currentTimeMillis()-start);
+			ExtractedMsg msg = (ExtractedMsg) reply;
+			if (msg.getResponse()!=0)
+				log().warning("EXTRACT: FAILED "+curl.getStringUrl());
+			return new ResultMsg(curl, msg.getLinks(), msg.getRecord());
+		}).exceptionally(e -> {
+			// no reply in time: the page is stopped and completed anyway
+			log().warning("EXTRACT: FAILED "+curl.getStringUrl()+" "+e.getMessage());
+			return new ResultMsg(curl, new HashMap<>(), new ArrayList<>());
 		});
 
 		pipe(result, context().dispatcher()).to(self());
 	}
 	
 	private void forward(ResultMsg msg) {
-		CrawlURL curl = msg.getCurl();
+		scheduler.tell(extracted(msg.getCurl(), msg.getLinks(), msg.getRecord()), self());
+	}
+	
+	/**
+	 * Builds the request of the outgoing links and of the data record 
+	 * of the given {@link CrawlURL}, which are extracted in a single visit of the page.
+	 * @param curl the CrawlURL
+	 * @return the extraction request
+	 */
+	static ExtractMsg extractMsg(CrawlURL curl) {
+		PageClass src = curl.getPageClass();
+		List<String> navXPaths = (!src.isEndPage()) ? src.getNavigationXPaths() : new ArrayList<>();
+		List<String> formXPaths = (!src.isEndPage()) ? src.getFormXPaths() : new ArrayList<>();
+		Map<String, DataType> data = (src.isDataPage()) ? src.xPathToData() : new HashMap<>();
+		return new ExtractMsg(curl.getStringUrl(), navXPaths, formXPaths, data);
+	}
+	
+	/**
+	 * Returns a copy of the given {@link CrawlURL} holding the extracted
+	 * outgoing links and data record.
+	 * @param curl the CrawlURL
+	 * @param links the outgoing links, by XPath
+	 * @param recordList the data record
+	 * @return the extracted CrawlURL
+	 */
+	static CrawlURL extracted(CrawlURL curl, Map<String, List<String>> links, 
+			List<String> recordList) {
 		CrawlURL copy = copy(curl);
 				
-		Map<String, List<String>> links = msg.getLinks();
 		PageClass src = curl.getPageClass();
 		for (String xPath : links.keySet()) {
 			for (String link : links.get(xPath)) {
@@ -107,13 +133,11 @@ public class CrawlExtractor extends AbstractLoggingActor {
 			}
 		}
 		
-		List<String> recordList = msg.getRecord();
 		if (!recordList.isEmpty()) {
-			String[] record = msg.getRecord().toArray(new String[recordList.size()]);
+			String[] record = recordList.toArray(new String[recordList.size()]);
 			copy.setRecord(record);
 		}
-
-		scheduler.tell(copy, self());
+		return copy;
 	}
 	
 }
@@ -3,7 +3,15 @@ package it.uniroma3.crawler.actors;
 import static it.uniroma3.crawler.util.Commands.*;
 import static akka.pattern.PatternsCS.ask;
 import static akka.pattern.PatternsCS.pipe;
+import static it.uniroma3.crawler.actors.CrawlExtractor.extractMsg;
+import static it.uniroma3.crawler.actors.CrawlExtractor.extracted;
+import static it.uniroma3.crawler.actors.CrawlLinkScheduler.outLinks;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -14,22 +22,61 @@ import akka.actor.Props;
 import it.uniroma3.crawler.messages.*;
 import it.uniroma3.crawler.model.CrawlURL;
 import it.uniroma3.crawler.model.PageClass;
+import it.uniroma3.crawler.settings.CrawlerSettings;
+import it.uniroma3.crawler.settings.Settings;
+import it.uniroma3.crawler.util.CrawlMetrics;
+import it.uniroma3.crawler.util.Metrics;
 import scala.concurrent.duration.Duration;
 
 public class CrawlFetcher extends AbstractLoggingActor {
+	public static final String ACTORS_PIPELINE = "actors";
+	public static final String LOCAL_PIPELINE = "local";
+	
 	private final int id;
+	private final boolean localPipeline;
 	private final ActorRef cache;
-	private int failures;
+	private final int window;
+	private final Map<String, Request> inFlight;
+	private final Deque<Integer> freeSlots;
+	private final Deque<CrawlURL> waiting; // received with the window full
+	
+	/**
+	 * A URL being fetched, with its own retry state
+	 */
+	static private class Request {
+		private final int slot;
+		private int failures;
+		
+		private Request(int slot) {
+			this.slot = slot;
+		}
+	}
 	
 	static public class ResultMsg {
 		private final CrawlURL curl;
 		private final String url;
 		private final int responseCode;
+		private final long latency;
+		private final int status;
+		private final long fetchTime;
+		private final Map<String, List<String>> outLinks;
+		private final List<String> record;
 		
-		public ResultMsg(CrawlURL curl, String url, int resp) {
+		public ResultMsg(CrawlURL curl, String url, int resp, long latency, 
+				int status, long fetchTime) {
+			this(curl, url, resp, latency, status, fetchTime, null, null);
+		}
+		
+		public ResultMsg(CrawlURL curl, String url, int resp, long latency, 
+				int status, long fetchTime, Map<String, List<String>> links, List<String> record) {
 			this.curl = curl;
 			this.url = url;
 			this.responseCode = resp;
+			this.latency = latency;
+			this.status = status;
+			this.fetchTime = fetchTime;
+			this.outLinks = links;
+			this.record = record;
 		}
 		
 		public CrawlURL getCurl() {
@@ -43,39 +90,119 @@ public class CrawlFetcher extends AbstractLoggingActor {
 		public int getResponseCode() {
 			return this.responseCode;
 		}
+		
+		public long getLatency() {
+			return this.latency;
+		}
+		
+		/**
+		 * Returns the HTTP status of the response
+		 * @return the status, or 0 if the server did not answer
+		 */
+		public int getStatus() {
+			return this.status;
+		}
+		
+		/**
+		 * Returns the time taken by the fetch alone, 
+		 * without saving and extracting the page
+		 * @return the fetch time in milliseconds
+		 */
+		public long getFetchTime() {
+			return this.fetchTime;
+		}
+		
+		/**
+		 * Returns the outgoing links extracted by the local pipeline
+		 * @return the links by XPath, or null if not extracted yet
+		 */
+		public Map<String, List<String>> getLinks() {
+			return this.outLinks;
+		}
+		
+		/**
+		 * Returns the data record extracted by the local pipeline
+		 * @return the record, or null if not extracted yet
+		 */
+		public List<String> getRecord() {
+			return this.record;
+		}
 	}
 	
 	public CrawlFetcher() {
 		this.id = Integer.parseInt(self().path().name().replace("fetcher", ""));
+		CrawlerSettings settings = Settings.SettingsProvider.get(context().system());
+		this.localPipeline = LOCAL_PIPELINE.equals(settings.pipeline);
 		String cacheName = "cache" + id;
-		this.cache = context().actorOf(Props.create(CrawlCache.class), cacheName);
-		this.failures = 0;
+		this.cache = (!localPipeline) ? 
+				context().actorOf(Props.create(CrawlCache.class), cacheName) : null;
+		this.window = Math.max(1, settings.inflight);
+		this.inFlight = new HashMap<>();
+		this.freeSlots = new ArrayDeque<>();
+		for (int i=0;i<window;i++) freeSlots.add(i);
+		this.waiting = new ArrayDeque<>();
 	}
 	
 	@Override
 	public Receive createReceive() {
 		return receiveBuilder()
-		.matchEquals(START, msg -> context().parent().tell(NEXT, self()))
-		.match(CrawlURL.class, this::fetchRequest)
+		.matchEquals(START, msg -> {
+			// keep up to window URLs in flight
+			for (int i=0;i<window;i++) context().parent().tell(NEXT, self());
+		})
+		.match(CrawlURL.class, this::startRequest)
 		.match(ResultMsg.class, this::fetchHandle)
 		.build();
 	}
 	
+	private void startRequest(CrawlURL curl) {
+		String url = curl.getStringUrl();
+		if (inFlight.containsKey(url)) {
+			// re-issued while still in flight: the running request settles its lease
+			log().warning("HTTP REQUEST: ALREADY IN FLIGHT "+url);
+			context().parent().tell(NEXT, self());
+			return;
+		}
+		if (freeSlots.isEmpty()) {
+			// started by next() when a slot frees
+			waiting.add(curl);
+			return;
+		}
+		inFlight.put(url, new Request(freeSlots.poll()));
+		fetchRequest(curl);
+	}
+	
 	private void fetchRequest(CrawlURL curl) {
 		String url = curl.getStringUrl();
 		PageClass pClass = curl.getPageClass();
 		boolean js = curl.getPageClass().useJavaScript();
 		ActorSelection repository = context().actorSelection(REPOSITORY);
+		long start = System.currentTimeMillis();
+		FetchMsg fetch = new FetchMsg(url, pClass.getForm(), curl.getFormParameters(),
+				pClass.getName(), curl.getDomain(),id,js);
+		
+		if (localPipeline) {
+			CompletableFuture<Object> future = 
+					ask(repository, new ProcessMsg(fetch, extractMsg(curl), 
+							inFlight.get(url).slot), 
+						100000).toCompletableFuture();
+			CompletableFuture<ResultMsg> result = future.thenApply(v -> {
+				ProcessedMsg msg = (ProcessedMsg) future.join();
+				return new ResultMsg(curl, msg.getUrl(), msg.getResponse(), 
+						System.currentTimeMillis()-start, msg.getStatus(), msg.getFetchTime(),
+						msg.getLinks(), msg.getRecord());
+			}).exceptionally(e -> timedOut(curl, start));
+			pipe(result, context().dispatcher()).to(self());
+			return;
+		}
 		
 		CompletableFuture<Object> future = 
-				ask(repository, 
-					new FetchMsg(url, pClass.getForm(), curl.getFormParameters(),
-							pClass.getName(), curl.getDomain(),id,js), 
-					10000).toCompletableFuture();
+				ask(repository, fetch, 10000).toCompletableFuture();
 		CompletableFuture<ResultMsg> result = future.thenApply(v -> {
 			FetchedMsg msg = (FetchedMsg) future.join();
-			return new ResultMsg(curl, msg.getUrl(), msg.getResponse());
-		});
+			return new ResultMsg(curl, msg.getUrl(), msg.getResponse(), 
+					System.currentTimeMillis()-start, msg.getStatus(), msg.getFetchTime());
+		}).exceptionally(e -> timedOut(curl, start));
 		pipe(result, context().dispatcher()).to(self());
 	}
 	
@@ -83,39 +210,98 @@ public class CrawlFetcher extends AbstractLoggingActor {
 		CrawlURL curl = msg.getCurl();
 		String url = curl.getStringUrl();
 		String newUrl = msg.getUrl();
+		Request request = inFlight.get(url);
+		if (request==null) return; // stale or duplicate result
+		
+		Metrics.MetricsProvider.get(context().system())
+			.record((localPipeline) ? CrawlMetrics.PROCESS : CrawlMetrics.FETCH, msg.getLatency());
+		// let the Frontier adapt the crawl rate to the server responses
+		context().parent().tell(new FetchStatsMsg(msg.getFetchTime(), 
+				!isOverloaded(msg.getStatus())), self());
 		
 		if (msg.getResponseCode()==0) {			
-			failures = 0; // everything went ok
+			complete(url); // everything went ok
 
 			if (newUrl!=null)
 				log().info("Page reached = "+newUrl); // url has changed
 			else 
 				log().info("Page reached = "+url);
 			
-			// send cUrl to cache for further processing
-			cache.tell(curl, self());
-			// request next cUrl to Frontier
-			context().parent().tell(NEXT, self());
+			if (localPipeline) {
+				// page already saved and extracted: results go to the Frontier
+				CrawlURL extracted = extracted(curl, msg.getLinks(), msg.getRecord());
+				StoreURLsMsg outLinks = outLinks(extracted);
+				if (!outLinks.isEmpty()) context().parent().tell(outLinks, self());
+				context().parent().tell(new OldURLMsg(extracted), self());
+			}
+			else {
+				// send cUrl to cache for further processing
+				cache.tell(curl, self());
+			}
+			next();
+		}
+		else if (msg.getResponseCode()==ProcessedMsg.SAVE_FAILED) {
+			fail(url);
+			log().warning("SAVE: FAILED "+url);
+			next();
+		}
+		else if (msg.getResponseCode()==ProcessedMsg.EXTRACT_FAILED) {
+			// fetched and saved: trying again would not change the extraction
+			fail(url);
+			log().warning("EXTRACT: FAILED "+url);
+			next();
 		}
 		else {
 			log().warning("HTTP REQUEST: FAILED "+url);
-			failures++;
-			if (failures <= curl.getPageClass().maxTries()) {
+			request.failures++;
+			if (request.failures <= curl.getPageClass().maxTries()) {
 				log().warning("HTTP REQUEST: TRY AGAIN...");
-				self().tell(curl, self());
+				fetchRequest(curl);
 			}
 			else {
-				failures = 0;
+				fail(url);
 				// Stop crawlPage actor
-				context().actorSelection(REPOSITORY)
-				.tell(new StopMsg(curl.getStringUrl()), self());
+				if (!localPipeline)
+					context().actorSelection(REPOSITORY)
+					.tell(new StopMsg(curl.getStringUrl()), self());
 				
 				log().info("TRYING NEXT URL");
-				context().parent().tell(NEXT, self());
+				next();
 			}
 		}
 	}
 	
+	/* a request without response fails like a fetch, 
+	 * so that its slot is not lost */
+	private ResultMsg timedOut(CrawlURL curl, long start) {
+		long elapsed = System.currentTimeMillis()-start;
+		return new ResultMsg(curl, null, ProcessedMsg.FETCH_FAILED, elapsed, 0, elapsed);
+	}
+	
+	/* no answer (timeout or connection error), too many requests or a server error */
+	private static boolean isOverloaded(int status) {
+		return status==0 || status==429 || status>=500;
+	}
+	
+	/* fills the freed slot with a waiting URL, 
+	 * or with the next one from the Frontier */
+	private void next() {
+		CrawlURL curl = waiting.poll();
+		if (curl!=null) startRequest(curl);
+		else context().parent().tell(NEXT, self());
+	}
+	
+	private void complete(String url) {
+		Request request = inFlight.remove(url);
+		if (request!=null) freeSlots.add(request.slot);
+	}
+	
+	/* gives up on the URL: the Frontier drops its lease at once */
+	private void fail(String url) {
+		complete(url);
+		context().parent().tell(new FailedURLMsg(url), self());
+	}
+	
 	@SuppressWarnings("unused")
 	private void waitAndRequestNext(int time) {
 		// wait time befor requesting
@@ -1,10 +1,12 @@
 package it.uniroma3.crawler.actors;
 
 import static it.uniroma3.crawler.util.Commands.REPOSITORY;
+import static java.util.stream.Collectors.toList;
 
 import akka.actor.AbstractActor;
 import akka.actor.ActorSelection;
 import it.uniroma3.crawler.messages.StoreURLMsg;
+import it.uniroma3.crawler.messages.StoreURLsMsg;
 import it.uniroma3.crawler.messages.OldURLMsg;
 import it.uniroma3.crawler.messages.StopMsg;
 import it.uniroma3.crawler.model.CrawlURL;
@@ -22,11 +24,21 @@ public class CrawlLinkScheduler extends AbstractActor {
 		ActorSelection frontier = context().actorSelection("../../../..");
 		ActorSelection repository = context().actorSelection(REPOSITORY);
 						
-		curl.getOutLinks().stream()
-		.map(link -> new StoreURLMsg(link, curl.getOutLinkPageClass(link)))
-		.forEach(newcurl -> frontier.tell(newcurl, self()));
+		StoreURLsMsg outLinks = outLinks(curl);
+		if (!outLinks.isEmpty()) frontier.tell(outLinks, self());
 		repository.tell(new StopMsg(curl.getStringUrl()), self());
 		frontier.tell(new OldURLMsg(curl), self());
 	}
+	
+	/**
+	 * Returns the outgoing links of the given {@link CrawlURL}, to be stored in the frontier
+	 * @param curl the CrawlURL
+	 * @return the outgoing links
+	 */
+	static StoreURLsMsg outLinks(CrawlURL curl) {
+		return new StoreURLsMsg(curl.getOutLinks().stream()
+		.map(link -> new StoreURLMsg(link, curl.getOutLinkPageClass(link)))
+		.collect(toList()));
+	}
 
 }
@@ -18,6 +18,7 @@ import java.util.Map;
 import com.gargoylesoftware.htmlunit.HttpMethod;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.gargoylesoftware.htmlunit.util.NameValuePair;
 
@@ -25,71 +26,149 @@ import akka.actor.AbstractLoggingActor;
 import akka.actor.ActorRef;
 import it.uniroma3.crawler.messages.*;
 import it.uniroma3.crawler.model.DataType;
-import it.uniroma3.crawler.util.FileUtils;
+import it.uniroma3.crawler.util.LightFetcher;
+import it.uniroma3.crawler.util.PageCache;
+import it.uniroma3.crawler.util.PageCaches;
+import it.uniroma3.crawler.util.PageStore;
+import it.uniroma3.crawler.util.PageStores;
+import it.uniroma3.crawler.util.WarcArchives;
+import it.uniroma3.crawler.util.WebClientPool;
+import it.uniroma3.crawler.util.WebClientPools;
 
+/**
+ * A long-lived worker fetching, saving and extracting the pages routed to it 
+ * by the {@link CrawlRepository}. The state of each page is kept until its 
+ * {@link StopMsg} is received.
+ */
 public class CrawlPage extends AbstractLoggingActor {
-	private String url;
-	private String pclass;
-	private String domain;
-	private HtmlPage html;
-	private String htmlPath;
+	private final Map<String, Page> pages = new HashMap<>();
+	
+	/**
+	 * The state of a page between its fetch and its extraction
+	 */
+	static private class Page {
+		private String url;
+		private String pclass;
+		private String domain;
+		private HtmlPage html;
+		private String htmlPath;
+		private int status; // HTTP status of the response, 0 if none
+		private long fetchTime;
+	}
 	
 	@Override
 	public Receive createReceive() {
 		return receiveBuilder()
 		.match(FetchMsg.class, this::fetch)
-		.matchEquals(SAVE, msg -> save())
+		.match(SaveMsg.class, this::save)
 		.match(ExtractLinksMsg.class, this::extract)
-		.match(ExtractDataMsg.class, this::extract)			
+		.match(ExtractDataMsg.class, this::extract)
+		.match(ExtractMsg.class, this::extract)
+		.match(ProcessMsg.class, this::process)
+		.match(StopMsg.class, this::stop)
 		.build();
 	}
 	
+	@Override
+	public void postStop() {
+		pages.values().forEach(page -> getPageCache().remove(page.url));
+		pages.clear();
+	}
+	
 	private void fetch(FetchMsg msg) {
-		setURL(msg.getUrl());
-		setClass(msg.getPageClass());
-		setDomain(msg.getDomain());
+		Page page = pages.computeIfAbsent(msg.getUrl(), u -> new Page());
+		page.url = msg.getUrl();
+		page.pclass = msg.getPageClass();
+		page.domain = msg.getDomain();
+
+		page.html = fetchUrl(page, msg.getForm(), msg.getParams(), msg.useJavaScript());
+		int code = (page.html!=null) ? 0 : 1;
+		FetchedMsg response = (!msg.getUrl().equals(page.url)) ? 
+				new FetchedMsg(page.url, code, page.status, page.fetchTime) 
+				: new FetchedMsg(code, page.status, page.fetchTime);
+		sender().tell(response, self());
+	}
+	
+	/* fetch, save and extract in a single task: 
+	 * the page never leaves this actor */
+	private void process(ProcessMsg msg) {
+		FetchMsg fetch = msg.getFetch();
+		ExtractMsg extract = msg.getExtract();
+		Page page = new Page();
+		page.url = fetch.getUrl();
+		page.pclass = fetch.getPageClass();
+		page.domain = fetch.getDomain();
 
-		HtmlPage html = fetchUrl(url, msg.getForm(), msg.getParams(), msg.useJavaScript());
-		setHtml(html);
-		int code = (html!=null) ? 0 : 1;
-		FetchedMsg response = (!msg.getUrl().equals(url)) ? new FetchedMsg(url, code) : new FetchedMsg(code);
+		HtmlPage html = fetchUrl(page, fetch.getForm(), fetch.getParams(), fetch.useJavaScript());
+		String newUrl = (!fetch.getUrl().equals(page.url)) ? page.url : null;
+		ProcessedMsg response;
+		if (html==null)
+			response = new ProcessedMsg(ProcessedMsg.FETCH_FAILED, page.status, page.fetchTime);
+		else {
+			String path = getPageStore().save(html, page.domain);
+			if (path.isEmpty()) {
+				response = new ProcessedMsg(ProcessedMsg.SAVE_FAILED, page.status, page.fetchTime);
+				log().warning("process: IOException while saving page: "+page.url);
+			}
+			else {
+				context().parent().tell(new SaveCacheMsg(page.domain,page.url,page.pclass,path), 
+						ActorRef.noSender());
+				try {
+					Map<String, List<String>> outLinks = getOutLinks(html, page, 
+							extract.getNavXPaths(), extract.getFormXPaths());
+					List<String> record = getDataRecord(html, extract.getData());
+					response = new ProcessedMsg(newUrl, 0, page.status, page.fetchTime, 
+							outLinks, record);
+				} catch (Exception e) {
+					response = new ProcessedMsg(ProcessedMsg.EXTRACT_FAILED, 
+							page.status, page.fetchTime);
+					log().warning("process: Exception while extracting HtmlPage: "+path+" "+e.getMessage());
+				}
+			}
+		}
 		sender().tell(response, self());
 	}
 	
-	private void save() {
-		String directory = FileUtils.getPagesDirectory(domain);
-		String path = savePage(html, directory, true);
+	private void save(SaveMsg msg) {
+		Page page = pages.get(msg.getUrl());
+		if (page==null || page.html==null) {
+			sender().tell(ERROR, self());
+			log().warning("save: page not fetched: "+msg.getUrl());
+			return;
+		}
+		String path = getPageStore().save(page.html, page.domain);
 		if (!path.isEmpty()) {
-			setHtmlPath(path);
+			page.htmlPath = path;
+			getPageCache().put(page.url, page.html);
 			sender().tell(SAVED, self());
-			context().parent().tell(new SaveCacheMsg(domain,url,pclass,path), 
+			context().parent().tell(new SaveCacheMsg(page.domain,page.url,page.pclass,path), 
 				ActorRef.noSender());
 		}
 		else {
 			//TODO: improve exception handling
 			sender().tell(ERROR, self());
-			log().warning("save: IOException while saving page: "+url);
+			log().warning("save: IOException while saving page: "+page.url);
 		}
-		setHtml(null);
+		page.html = null;
 	}
 	
 	private void extract(ExtractLinksMsg msg) {
+		Page page = pages.get(msg.getUrl());
 		try {
-			HtmlPage html = restorePageFromFile(htmlPath, domain);
-			Map<String, List<String>> outLinks = getOutLinks(html, domain, msg.getNavXPaths(),
+			HtmlPage html = getSavedPage(page);
+			Map<String, List<String>> outLinks = getOutLinks(html, page, msg.getNavXPaths(),
 					msg.getFormXPaths());
 			sender().tell(new ExtractedLinksMsg(outLinks), self());
 		} catch (Exception e) {
 			//TODO: improve exception handling
 			sender().tell(new ExtractedLinksMsg(), self());
-			log().warning("extract: Exception while restoring HtmlPage: "+htmlPath+" "+e.getMessage());
-			e.printStackTrace();
+			log().warning("extract: Exception while restoring HtmlPage: "+msg.getUrl()+" "+e.getMessage());
 		}
 	}
 	
 	private void extract(ExtractDataMsg msg) {
 		try {
-			HtmlPage html = restorePageFromFile(htmlPath, domain);
+			HtmlPage html = getSavedPage(pages.get(msg.getUrl()));
 			List<String> record = getDataRecord(html, msg.getData());
 			sender().tell(new ExtractedDataMsg(record), self());
 		} catch (Exception e) {
@@ -99,28 +178,70 @@ public class CrawlPage extends AbstractLoggingActor {
 		}
 	}
 	
-	private void setHtml(HtmlPage html) {
-		this.html = html;
+	private void extract(ExtractMsg msg) {
+		Page page = pages.get(msg.getUrl());
+		try {
+			HtmlPage html = getSavedPage(page);
+			Map<String, List<String>> outLinks = getOutLinks(html, page, msg.getNavXPaths(),
+					msg.getFormXPaths());
+			List<String> record = getDataRecord(html, msg.getData());
+			sender().tell(new ExtractedMsg(outLinks, record), self());
+		} catch (Exception e) {
+			sender().tell(new ExtractedMsg(ProcessedMsg.EXTRACT_FAILED), self());
+			log().warning("extract: Exception while restoring HtmlPage: "+msg.getUrl()+" "+e.getMessage());
+		}
 	}
 	
-	private void setHtmlPath(String htmlPath) {
-		this.htmlPath = htmlPath;
+	private void stop(StopMsg msg) {
+		Page page = pages.remove(msg.getUrl());
+		if (page!=null) getPageCache().remove(page.url);
 	}
 	
-	private void setDomain(String domain) {
-		this.domain = domain;
+	/* The page parsed at fetch time is kept in the node cache until 
+	 * evicted, then it is parsed again from the page store */
+	private HtmlPage getSavedPage(Page page) throws IOException {
+		if (page==null || page.htmlPath==null) 
+			throw new IOException("page not saved");
+		HtmlPage html = getPageCache().get(page.url);
+		return (html!=null) ? html : PageStore.restore(page.htmlPath, page.domain);
 	}
 	
-	private void setURL(String url) {
-		this.url = url;
+	private PageCache getPageCache() {
+		return PageCaches.CacheProvider.get(context().system());
 	}
 	
-	private void setClass(String pclass) {
-		this.pclass = pclass;
+	private PageStore getPageStore() {
+		return PageStores.StoreProvider.get(context().system());
 	}
 	 
-	private HtmlPage fetchUrl(String url, String form, List<NameValuePair> params, boolean js) {
-		WebClient client = makeWebClient(js);
+	/* fetches the page, recording the HTTP status of the response 
+	 * and the time taken (which includes parsing with a WebClient) */
+	private HtmlPage fetchUrl(Page target, String form, List<NameValuePair> params, boolean js) {
+		String url = target.url;
+		WebClientPool pool = WebClientPools.PoolProvider.get(context().system());
+		LightFetcher light = pool.getLightFetcher();
+		long start = System.currentTimeMillis();
+		target.status = 0;
+		if (!js && form==null && params.isEmpty() && light!=null) {
+			WebResponse response;
+			try {
+				response = light.fetchResponse(url);
+				target.status = response.getStatusCode();
+			} catch (Exception e) {
+				return null;
+			} finally {
+				target.fetchTime = System.currentTimeMillis()-start;
+			}
+			archive(response, target);
+			try {
+				return light.parse(response);
+			} catch (Exception e) {
+				return null;
+			}
+		}
+		WebClientPool.PooledClient pooled = pool.borrow(js);
+		WebClient client = pooled.getClient();
+		boolean healthy = true;
 		HtmlPage page;
 		try {
 			if (form!=null) {
@@ -138,20 +259,35 @@ public class CrawlPage extends AbstractLoggingActor {
 				
 				page = getPage(request, client);
 				// URL will change! (hopefully...)
-				setURL(page.getUrl().toString());
+				target.url = page.getUrl().toString();
 			}
 			else
 				page = getPage(url, client);
 		} catch (Exception e) {
 			page = null;
+			healthy = false;
 		} finally {
-			client.close();
+			target.fetchTime = System.currentTimeMillis()-start;
+			pool.release(pooled, healthy);
+		}
+		if (page!=null) {
+			target.status = page.getWebResponse().getStatusCode();
+			archive(page.getWebResponse(), target);
 		}
 		return page;
 	}
 	
-	private Map<String, List<String>> getOutLinks(HtmlPage html, String base, 
+	private void archive(WebResponse response, Page target) {
+		try {
+			WarcArchives.ArchiveProvider.get(context().system()).archive(response, target.domain);
+		} catch (IOException e) {
+			log().warning("fetch: IOException while archiving response: "+target.url);
+		}
+	}
+	
+	private Map<String, List<String>> getOutLinks(HtmlPage html, Page page, 
 			List<String> xPaths, List<String> formXPaths) throws IOException {
+		String base = page.domain;
 		Map<String, List<String>> xpath2urls = new HashMap<>();
 		for (String xp : xPaths) {
 			xpath2urls.put(xp, getAbsoluteInternalURLs(html,xp,base));
@@ -159,7 +295,7 @@ public class CrawlPage extends AbstractLoggingActor {
 		for (String xp : formXPaths) {
 			/* Save form Name/Value pairs for a future POST request
 			 * as: "http://website.com/page>search=value;param=value2;..." */
-			StringBuilder postRequest = new StringBuilder(url+">");
+			StringBuilder postRequest = new StringBuilder(page.url+">");
 			List<NameValuePair> formParams = getFormParameters(html, xp);
 			for (NameValuePair param : formParams) {
 				postRequest.append(param.getName()+"="+param.getValue()+";");
@@ -170,7 +306,14 @@ public class CrawlPage extends AbstractLoggingActor {
 		return xpath2urls;
 	}
 	
-	private List<String> getDataRecord(HtmlPage html, Map<String, DataType> dataTypes) {
+	/**
+	 * Extracts the data record of the given page.
+	 * @param html the page
+	 * @param dataTypes the XPaths to the data of the PageClass of the page 
+	 * (see {@link it.uniroma3.crawler.model.PageClass#xPathToData()})
+	 * @return the extracted values
+	 */
+	public static List<String> getDataRecord(HtmlPage html, Map<String, DataType> dataTypes) {
 		List<String> record = dataTypes.keySet().stream()
 				.map(xp -> dataTypes.get(xp).extract(html, xp.split("\t")[1]))
 				.collect(toList());
@@ -1,5 +1,8 @@
 package it.uniroma3.crawler.actors;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import akka.actor.AbstractActor;
 import akka.actor.ActorRef;
 import akka.actor.Address;
@@ -9,65 +12,146 @@ import akka.actor.Props;
 import akka.remote.RemoteScope;
 import it.uniroma3.crawler.messages.*;
 import it.uniroma3.crawler.settings.AddressSettings;
+import it.uniroma3.crawler.settings.CrawlerSettings;
+import it.uniroma3.crawler.settings.NodesSettings;
+import it.uniroma3.crawler.settings.Settings;
+import it.uniroma3.crawler.util.ConsistentHashRing;
 import it.uniroma3.crawler.util.FileUtils;
 
-import static it.uniroma3.crawler.util.Commands.SAVE;
-
 import scala.Option;
 
+/**
+ * Dispatches the page requests to the page workers ({@link CrawlPage}) 
+ * deployed on the repository nodes. Each node runs a fixed pool of workers, 
+ * and the requests of a URL are always routed to the same worker by consistent 
+ * hash of the URL.
+ * <br>
+ * The node of a URL is chosen by consistent hash of the URL as well, over 
+ * the weighted nodes (see {@link ConsistentHashRing}), unless the 
+ * {@link #FETCHER_ASSIGNMENT} assigns each fetcher its own node.
+ */
 public class CrawlRepository extends AbstractActor {
+	public static final String HASH_ASSIGNMENT = "hash";
+	public static final String FETCHER_ASSIGNMENT = "fetcher";
+	
 	private final ActorRef csvCache;
 	private final String[] nodes;
+	private final ConsistentHashRing<String> ring;
+	private final Map<String, Integer> nodeIndex;
+	private final int workers;
+	private final int virtualNodes;
+	private final Map<Integer, ConsistentHashRing<String>> pools;
+	private final Map<String, String> assigned;
 	
 	public CrawlRepository() {
 		this.csvCache = context().actorOf(Props.create(CrawlUrlClass.class), "csvcache");
 		context().watch(csvCache);
-		this.nodes = AddressSettings.SettingsProvider.get(context().system()).nodes;
+		NodesSettings nodesSettings = AddressSettings.SettingsProvider.get(context().system());
+		this.nodes = nodesSettings.nodes;
+		CrawlerSettings set = Settings.SettingsProvider.get(context().system());
+		this.workers = Math.max(1, set.pageworkers);
+		this.virtualNodes = set.virtualnodes;
+		String assignment = set.nodeassignment;
+		this.nodeIndex = new HashMap<>();
+		if (!FETCHER_ASSIGNMENT.equals(assignment)) {
+			this.ring = new ConsistentHashRing<>(virtualNodes);
+			for (int i=0;i<nodes.length;i++) {
+				ring.add(nodes[i], nodesSettings.weights[i]);
+				nodeIndex.put(nodes[i], i);
+			}
+		}
+		else this.ring = null;
+		this.pools = new HashMap<>();
+		this.assigned = new HashMap<>();
 	}
 	
 	@Override
 	public Receive createReceive() {
 		return receiveBuilder()
 		.match(FetchMsg.class, msg -> 
-			findOrCreate(msg.getUrl(), msg.getId()).forward(msg, context()))
+			assign(msg.getUrl(), msg.getId()).forward(msg, context()))
+		.match(ProcessMsg.class, msg -> 
+			findOrCreatePipeline(msg.getFetch(), msg.getSlot()).forward(msg, context()))
 		.match(SaveMsg.class, msg -> 
-			find(msg.getUrl()).tell(SAVE, sender()))
+			find(msg.getUrl()).forward(msg, context()))
 		.match(ExtractLinksMsg.class, msg -> 
 			find(msg.getUrl()).forward(msg, context()))
 		.match(ExtractDataMsg.class, msg -> 
 			find(msg.getUrl()).forward(msg, context()))
+		.match(ExtractMsg.class, msg -> 
+			find(msg.getUrl()).forward(msg, context()))
 		.match(SaveCacheMsg.class, 
 			msg -> csvCache.forward(msg, context()))
-		.match(StopMsg.class, this::stopChildPage)
+		.match(StopMsg.class, this::stopPage)
 		.build();
 	}
 	
-	private void stopChildPage(StopMsg msg) {
-		ActorRef child = find(msg.getUrl());
-		context().unwatch(child);
-		context().stop(child);
+	private void stopPage(StopMsg msg) {
+		ActorRef worker = find(msg.getUrl());
+		assigned.remove(msg.getUrl());
+		worker.tell(msg, self());
+	}
+	
+	/* The worker of a URL is chosen once, when fetched,
+	 * and kept until the URL is stopped */
+	private ActorRef assign(String url, int id) {
+		String name = assigned.get(url);
+		if (name==null) {
+			name = pool(node(url, id)).nodeFor(url);
+			assigned.put(url, name);
+		}
+		return child(name);
 	}
 	
-	private ActorRef findOrCreate(String url, int id) {
-		ActorRef child = find(url);
-		if (child==null) child = create(url, id);
-		return child;
+	/**
+	 * Returns the index of the node that fetches the given URL
+	 * @param url the URL
+	 * @param id the index of the requesting fetcher
+	 * @return the node index
+	 */
+	private int node(String url, int id) {
+		return (ring!=null) ? nodeIndex.get(ring.nodeFor(url)) : id;
 	}
 	
 	private ActorRef find(String url) {
-		String name = FileUtils.normalizeURL(url);
+		String name = assigned.get(url);
+		return (name!=null) ? child(name) : context().system().deadLetters();
+	}
+	
+	private ConsistentHashRing<String> pool(int id) {
+		ConsistentHashRing<String> pool = pools.get(id);
+		if (pool==null) {
+			pool = new ConsistentHashRing<>(virtualNodes);
+			for (int i=0;i<workers;i++) {
+				String name = "page"+id+"-"+i;
+				create(name, id);
+				pool.add(name);
+			}
+			pools.put(id, pool);
+		}
+		return pool;
+	}
+	
+	/* In the local pipeline mode a single CrawlPage for each in-flight slot
+	 * of a fetcher processes its URLs on each node. Fetcher ids restart 
+	 * in the frontier of each site, so the site is part of the name */
+	private ActorRef findOrCreatePipeline(FetchMsg msg, int slot) {
+		int node = node(msg.getUrl(), msg.getId());
+		String name = "pipeline"+node+"-"+FileUtils.normalizeURL(msg.getDomain())
+				+"-"+msg.getId()+"-"+slot;
+		Option<ActorRef> option = context().child(name);
+		return (option.isEmpty()) ? create(name, node) : option.get();
+	}
+	
+	private ActorRef child(String name) {
 		Option<ActorRef> option = context().child(name);
-		ActorRef ref = (option.isEmpty()) ? null : option.get();
-		return ref;
+		return (option.isEmpty()) ? context().system().deadLetters() : option.get();
 	}
 	
-	private ActorRef create(String url, int id) {	
-		String name = FileUtils.normalizeURL(url);
+	private ActorRef create(String name, int id) {	
 		Address addr = AddressFromURIString.parse(nodes[id]);
 		Props props = Props.create(CrawlPage.class).withDeploy(new Deploy(new RemoteScope(addr)));
-		ActorRef child = context().actorOf(props, name);		
-		context().watch(child);
-		return child;
+		return context().actorOf(props, name);
 	}
 	
 }
@@ -1,36 +1,94 @@
 package it.uniroma3.crawler.actors;
 
-import java.io.FileWriter;
-import java.io.IOException;
+import static it.uniroma3.crawler.util.Commands.FLUSH;
 
-import com.csvreader.CsvWriter;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import akka.actor.AbstractLoggingActor;
+import akka.actor.Cancellable;
 import it.uniroma3.crawler.messages.*;
-import it.uniroma3.crawler.util.FileUtils;
+import it.uniroma3.crawler.settings.CrawlerSettings;
+import it.uniroma3.crawler.settings.Settings;
+import it.uniroma3.crawler.util.RepositoryIndex;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
 
+/**
+ * Keeps the {@link RepositoryIndex} of every crawled website, mapping each
+ * saved URL to its PageClass and to the file of the saved page.
+ * <br>
+ * Each repository is opened once and written in groups: the records are
+ * flushed to disk once <code>indexbatch</code> of them are buffered, every
+ * <code>indexflush</code> milliseconds, and when the actor stops.
+ */
 public class CrawlUrlClass extends AbstractLoggingActor {
-	private final static String DIRECTORY = "src/main/resources/repository/";
+	private final Map<String, RepositoryIndex> repositories;
+	private final int batch;
+	private final long flushInterval;
+	private Cancellable flushTick;
+	private int pending;
+
+	public CrawlUrlClass() {
+		CrawlerSettings set = Settings.SettingsProvider.get(context().system());
+		this.batch = Math.max(1, set.indexbatch);
+		this.flushInterval = set.indexflush;
+		this.repositories = new HashMap<>();
+	}
+
+	@Override
+	public void preStart() {
+		if (flushInterval>0) {
+			FiniteDuration interval = Duration.create(flushInterval, TimeUnit.MILLISECONDS);
+			flushTick = context().system().scheduler().schedule(interval, interval,
+					self(), FLUSH, context().dispatcher(), self());
+		}
+	}
+
+	@Override
+	public void postStop() {
+		if (flushTick!=null) flushTick.cancel();
+		for (RepositoryIndex repository : repositories.values()) {
+			try {
+				repository.close();
+			} catch (IOException e) {
+				log().warning("Could not close URL-PAGECLASS-FILEPATH Cache");
+			}
+		}
+		repositories.clear();
+	}
 
 	@Override
 	public Receive createReceive() {
 		return receiveBuilder()
 		.match(SaveCacheMsg.class, this::writeCache)
+		.matchEquals(FLUSH, f -> flush())
 		.build();
 	}
-	
+
 	private void writeCache(SaveCacheMsg msg) {
+		RepositoryIndex repository =
+				repositories.computeIfAbsent(msg.getDomain(), RepositoryIndex::new);
 		try {
-			String csv = DIRECTORY+FileUtils.normalizeURL(msg.getDomain())+".csv";
-			CsvWriter writer = new CsvWriter(new FileWriter(csv, true), '\t');
-			writer.write(msg.getUrl());
-			writer.write(msg.getPageClass());
-			writer.write(msg.getFilePath());
-			writer.endRecord();
-			writer.flush();
+			repository.append(msg.getUrl(), msg.getPageClass(), msg.getFilePath());
+			if (++pending>=batch)
+				flush();
 		} catch (IOException e) {
 			log().warning("Could not write URL-PAGECLASS-FILEPATH Cache");
 		}
 	}
 
+	private void flush() {
+		for (RepositoryIndex repository : repositories.values()) {
+			try {
+				repository.flush();
+			} catch (IOException e) {
+				log().warning("Could not flush URL-PAGECLASS-FILEPATH Cache");
+			}
+		}
+		pending = 0;
+	}
+
 }
@@ -0,0 +1,88 @@
+package it.uniroma3.crawler.actors.frontier;
+
+/**
+ * A Bloom filter of 64-bit fingerprints.
+ * <br>
+ * The filter is sized from the expected number of elements and the target false positive
+ * probability, up to the given memory limit. The bit positions of a fingerprint are computed
+ * with double hashing, so that no additional hash function is needed.
+ */
+public class BloomFilter {
+	private final long[] bits;
+	private final long size; // number of bits
+	private final int hashes;
+
+	/**
+	 * Constructs a new BloomFilter.
+	 * @param expected the expected number of elements
+	 * @param fpp the target false positive probability, in (0,1)
+	 * @param maxBytes the max memory taken by the filter, in bytes
+	 */
+	public BloomFilter(long expected, double fpp, long maxBytes) {
+		long n = Math.max(1, expected);
+		long optimal = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+		long max = Math.min(maxBytes*8, (long) Integer.MAX_VALUE*64);
+		long words = Math.max(1, (Math.max(64, Math.min(optimal, max))+63) / 64);
+		this.bits = new long[(int) words];
+		this.size = words*64;
+		this.hashes = (int) Math.max(1, Math.round((double) size / n * Math.log(2)));
+	}
+
+	/**
+	 * Adds the given fingerprint to this filter.
+	 * @param fingerprint the fingerprint
+	 * @return true if the fingerprint was definitely not present
+	 */
+	public boolean add(long fingerprint) {
+		long h1 = fingerprint, h2 = mix(fingerprint);
+		boolean added = false;
+		for (int i=0; i<hashes; i++) {
+			long bit = Long.remainderUnsigned(h1 + i*h2, size);
+			long mask = 1L << bit;
+			int word = (int) (bit>>>6);
+			if ((bits[word] & mask)==0) {
+				bits[word] |= mask;
+				added = true;
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * Returns true if the given fingerprint might be present in this filter
+	 * @param fingerprint the fingerprint
+	 * @return false if the fingerprint is definitely not present
+	 */
+	public boolean mightContain(long fingerprint) {
+		long h1 = fingerprint, h2 = mix(fingerprint);
+		for (int i=0; i<hashes; i++) {
+			long bit = Long.remainderUnsigned(h1 + i*h2, size);
+			if ((bits[(int) (bit>>>6)] & (1L << bit))==0) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the memory taken by this filter
+	 * @return the number of bytes
+	 */
+	public long bytes() {
+		return bits.length*8L;
+	}
+
+	/**
+	 * Returns the number of bit positions computed for each fingerprint
+	 * @return the number of hash functions
+	 */
+	public int hashes() {
+		return hashes;
+	}
+
+	private static long mix(long fp) {
+		long h = fp ^ (fp>>>33);
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h>>>33;
+		return h | 1;
+	}
+
+}
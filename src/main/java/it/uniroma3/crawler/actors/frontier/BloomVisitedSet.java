@@ -0,0 +1,91 @@
+package it.uniroma3.crawler.actors.frontier;
+
+/**
+ * A {@link VisitedSet} placing a {@link BloomFilter} in front of an exact VisitedSet.
+ * <br>
+ * Fingerprints that are definitely new are inserted in the exact set without looking them up
+ * (see {@link VisitedSet#insert(long)}), while the exact set is consulted only on probable
+ * hits of the filter.
+ * Hit and miss counters of the filter are kept for reporting.
+ */
+public class BloomVisitedSet implements VisitedSet {
+	private final BloomFilter filter;
+	private final VisitedSet exact;
+	private long misses, hits, falsePositives;
+
+	/**
+	 * Constructs a new BloomVisitedSet.
+	 * @param exact the exact VisitedSet
+	 * @param expected the expected number of fingerprints
+	 * @param fpp the target false positive probability of the filter
+	 * @param maxBytes the max memory taken by the filter, in bytes
+	 */
+	public BloomVisitedSet(VisitedSet exact, long expected, double fpp, long maxBytes) {
+		this.filter = new BloomFilter(expected, fpp, maxBytes);
+		this.exact = exact;
+	}
+
+	@Override
+	public boolean add(long fingerprint) {
+		if (filter.add(fingerprint)) {
+			misses++;
+			exact.insert(fingerprint);
+			return true;
+		}
+		hits++;
+		boolean added = exact.add(fingerprint);
+		if (added) falsePositives++;
+		return added;
+	}
+
+	@Override
+	public void insert(long fingerprint) {
+		filter.add(fingerprint);
+		exact.insert(fingerprint);
+	}
+
+	@Override
+	public boolean contains(long fingerprint) {
+		return filter.mightContain(fingerprint) && exact.contains(fingerprint);
+	}
+
+	@Override
+	public long size() {
+		return exact.size();
+	}
+
+	@Override
+	public long[] toArray() {
+		return exact.toArray();
+	}
+
+	/**
+	 * Returns the number of fingerprints the filter reported as definitely new
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of fingerprints the filter reported as probably present
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of hits of the filter that were new to the exact set
+	 * @return the number of false positives
+	 */
+	public long getFalsePositives() {
+		return falsePositives;
+	}
+
+	public String toString() {
+		return "[BLOOM FILTER: "+filter.bytes()+" bytes, "+filter.hashes()+" hashes, "
+				+ "misses "+misses+", hits "+hits+", false positives "+falsePositives+"]";
+	}
+
+}
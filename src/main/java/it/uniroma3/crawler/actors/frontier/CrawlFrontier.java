@@ -1,38 +1,63 @@
 package it.uniroma3.crawler.actors.frontier;
 
+import static it.uniroma3.crawler.factories.CrawlURLFactory.getCrawlUrl;
 import static it.uniroma3.crawler.util.Commands.*;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
-import java.util.Random;
-import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
 
 import akka.actor.ActorRef;
+import akka.actor.Cancellable;
+import akka.actor.Terminated;
 import akka.actor.Props;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
 import akka.japi.Creator;
 import akka.persistence.AbstractPersistentActor;
 import akka.persistence.RecoveryCompleted;
+import akka.persistence.SaveSnapshotFailure;
+import akka.persistence.SaveSnapshotSuccess;
+import akka.persistence.SnapshotMetadata;
+import akka.persistence.SnapshotOffer;
+import akka.persistence.SnapshotSelectionCriteria;
 import it.uniroma3.crawler.actors.CrawlDataWriter;
 import it.uniroma3.crawler.actors.CrawlFetcher;
+import it.uniroma3.crawler.messages.FetchStatsMsg;
 import it.uniroma3.crawler.messages.StoreURLMsg;
+import it.uniroma3.crawler.messages.StoreURLsMsg;
+import it.uniroma3.crawler.messages.FailedURLMsg;
 import it.uniroma3.crawler.messages.OldURLMsg;
 import it.uniroma3.crawler.model.CrawlURL;
 import it.uniroma3.crawler.model.PageClass;
+import it.uniroma3.crawler.settings.CrawlerSettings;
+import it.uniroma3.crawler.settings.Settings;
+import it.uniroma3.crawler.util.CrawlMetrics;
+import it.uniroma3.crawler.util.FingerprintUtils;
+import it.uniroma3.crawler.util.Metrics;
 import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
 
 public class CrawlFrontier extends AbstractPersistentActor  {
 	LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
 
 	private CrawlQueue queue;
-	private TreeSet<CrawlURL> inProcessURLs;
+	private InProcessURLs inProcessURLs;
+	private ToLongFunction<CharSequence> fingerprint;
+	private long leaseTime;
+	private Cancellable leaseCheck;
 	private ActorRef writer;
-	private Random random;
+	private HostPoliteness politeness;
+	private boolean dispatchScheduled;
 	private int maxPages;
 	private int pageCount;
 	private boolean isEnding;
+	private int snapshotInterval;
+	private boolean storageReady;
 	private Queue<ActorRef> waitingFetchers;
 	
 	static class InnerProps implements Creator<CrawlFrontier> {
@@ -64,13 +89,55 @@ public class CrawlFrontier extends AbstractPersistentActor  {
 		}
 	}
 
+	/* a URL taken back from an expired lease and put back in the queue */
+	static class ReissuedURL {
+		public final String url, pageClass;
+		public ReissuedURL(String url, String pageClass) {
+			this.url = url;
+			this.pageClass = pageClass;
+		}
+	}
+
+	/* a URL taken back from an expired lease and not re-issued any more */
+	static class ForgottenURL {
+		public final String url;
+		public ForgottenURL(String url) {
+			this.url = url;
+		}
+	}
+
+	/**
+	 * The state of the frontier at a given sequence number: 
+	 * the queue and the URLs being processed.
+	 */
+	static class FrontierSnapshot {
+		public final CrawlQueue.Snapshot queue;
+		public final String[][] inProcess;
+		public FrontierSnapshot(CrawlQueue.Snapshot queue, String[][] inProcess) {
+			this.queue = queue;
+			this.inProcess = inProcess;
+		}
+	}
+
 	public CrawlFrontier(int fetchers, int maxPages, int size, PageClass pclass) {
-		this.random = new Random();
 		this.isEnding = false;
-		this.queue = new CrawlQueue(size,pclass);
-		this.inProcessURLs = new TreeSet<>();
+		CrawlerSettings set = Settings.SettingsProvider.get(context().system());
+		VisitedSet visited = VisitedSet.create(set.visitedset, set.visitedcapacity, pclass);
+		if (set.bloomfpp>0) 
+			visited = new BloomVisitedSet(visited, set.visitedcapacity, 
+					set.bloomfpp, set.bloommemory*1024L*1024L);
+		this.fingerprint = FingerprintUtils.fingerprint(set.fingerprint);
+		this.queue = new CrawlQueue(size, pclass, 
+				QueueStorage.create(set.frontierspill, set.spillsegment, pclass), visited,
+				fingerprint);
+		this.inProcessURLs = new InProcessURLs();
+		this.leaseTime = set.lease;
+		this.politeness = (CrawlRateController.AIMD.equals(set.ratecontrol)) 
+				? new HostPoliteness(new CrawlRateController(pclass.getWaitTime(), 
+						set.minwait, set.maxwait, set.targetlatency))
+				: new HostPoliteness();
 		this.waitingFetchers = new LinkedList<>();
-		this.queue.deleteStorage();
+		this.snapshotInterval = set.snapshot;
 		this.maxPages = maxPages;
 		this.writer = context().actorOf(Props.create(CrawlDataWriter.class), "writer");
 		createFetchers(fetchers);
@@ -84,23 +151,38 @@ public class CrawlFrontier extends AbstractPersistentActor  {
 	@Override
 	public Receive createReceiveRecover() {
 		return receiveBuilder()
+		.match(SnapshotOffer.class, offer -> restore((FrontierSnapshot) offer.snapshot()))
 		.matchEquals(NEXT, n -> { 
+			prepareStorage();
 			CrawlURL next = queue.next();
-			if (next!=null) inProcessURLs.add(next);
+			if (next!=null) lease(next, null, 0);
 		})
-		.match(StoreURLMsg.class, ev -> queue.add(ev.getURL(), ev.getPageClass()))
-		.match(CompletedURL.class, ev -> {
-			for (CrawlURL curl : inProcessURLs) {
-				if (curl.getStringUrl().equals(ev.url)) {
-					inProcessURLs.remove(curl); 
-					break;
-				}
-			}
+		.match(StoreURLMsg.class, ev -> {
+			prepareStorage();
+			queue.add(ev.getURL(), ev.getPageClass());
+		})
+		.match(StoreURLsMsg.class, ev -> {
+			prepareStorage();
+			ev.getURLs().forEach(u -> queue.add(u.getURL(), u.getPageClass()));
+		})
+		.match(CompletedURL.class, ev -> completed(ev.url))
+		.match(ReissuedURL.class, ev -> {
+			prepareStorage();
+			inProcessURLs.takeBack(fingerprint.applyAsLong(ev.url));
+			CrawlURL curl = getCrawlUrl(ev.url, queue.getPageClass(ev.pageClass));
+			if (curl!=null) queue.recover(curl);
 		})
+		.match(ForgottenURL.class, ev -> inProcessURLs.forget(fingerprint.applyAsLong(ev.url)))
 		.match(RecoveryCompleted.class, ev -> {
+			prepareStorage();
 			log.info("RECOVERING "+inProcessURLs.toString());
-			inProcessURLs.forEach(queue::recover);
-			inProcessURLs.clear();
+			reissue(inProcessURLs.expire(Long.MAX_VALUE));
+			if (leaseTime>0) {
+				FiniteDuration interval = 
+						Duration.create(Math.max(1, leaseTime/2), TimeUnit.MILLISECONDS);
+				leaseCheck = context().system().scheduler().schedule(interval, interval, 
+						self(), EXPIRE, context().dispatcher(), self());
+			}
 		})
 		.build();
 	}
@@ -110,39 +192,209 @@ public class CrawlFrontier extends AbstractPersistentActor  {
 		return receiveBuilder()
 		.matchEquals(START, msg -> context().actorSelection("*").tell(msg, self()))
 		.matchEquals(NEXT, n -> {if (!end()) retrieve();})
+		.matchEquals(DISPATCH, n -> {
+			dispatchScheduled = false;
+			if (!end()) dispatch();
+		})
 		.match(StoreURLMsg.class, msg -> {if (!end()) store(msg);})
+		.match(StoreURLsMsg.class, msg -> {if (!end()) store(msg);})
 		.match(OldURLMsg.class, this::complete)
+		.match(FailedURLMsg.class, this::fail)
+		.match(FetchStatsMsg.class, this::adaptRate)
+		.matchEquals(EXPIRE, msg -> reissue(inProcessURLs.expire(System.currentTimeMillis())))
+		.match(Terminated.class, t -> {
+			waitingFetchers.removeIf(t.actor()::equals);
+			reissue(inProcessURLs.expire(t.actor()));
+		})
+		.match(SaveSnapshotSuccess.class, ok -> compact(ok.metadata()))
+		.match(SaveSnapshotFailure.class, ko -> 
+			log.warning("Cannot save snapshot: "+ko.cause().getMessage()))
 		.build();
 	}
 	
+	@Override
+	public void postStop() {
+		if (leaseCheck!=null) leaseCheck.cancel();
+	}
+	
+	/**
+	 * Restores the queue and the in-process URLs from the given snapshot:
+	 * the journal is then replayed from the following event
+	 */
+	private void restore(FrontierSnapshot snapshot) {
+		queue.restore(snapshot.queue);
+		inProcessURLs.clear();
+		for (String[] record : snapshot.inProcess) {
+			CrawlURL curl = getCrawlUrl(record[0], queue.getPageClass(record[1]));
+			if (curl!=null) lease(curl, null, 0);
+		}
+		storageReady = true;
+	}
+	
+	/**
+	 * Files left on the persistent-side of the queue by a previous run are only 
+	 * valid when a snapshot has been restored: otherwise they are deleted 
+	 * before replaying the journal from the beginning
+	 */
+	private void prepareStorage() {
+		if (!storageReady) {
+			queue.deleteStorage();
+			storageReady = true;
+		}
+	}
+	
+	/**
+	 * Saves a snapshot every {@link #snapshotInterval} journaled events
+	 */
+	private void snapshotIfDue() {
+		if (snapshotInterval>0 && lastSequenceNr()%snapshotInterval==0) {
+			String[][] inProcess = new String[inProcessURLs.size()][];
+			int i = 0;
+			for (CrawlURL curl : inProcessURLs.getURLs())
+				inProcess[i++] = new String[] {curl.getStringUrl(), curl.getPageClass().getName()};
+			try {
+				saveSnapshot(new FrontierSnapshot(queue.snapshot(), inProcess));
+			} catch (IOException e) {
+				log.warning("Cannot take snapshot: "+e.getMessage());
+			}
+		}
+	}
+	
+	/**
+	 * Deletes the journal events, the snapshots and the spill files
+	 * preceding the given saved snapshot
+	 */
+	private void compact(SnapshotMetadata saved) {
+		queue.releaseStorage();
+		deleteMessages(saved.sequenceNr());
+		deleteSnapshots(SnapshotSelectionCriteria.create(
+				saved.sequenceNr()-1, saved.timestamp()-1));
+	}
+	
+	private void lease(CrawlURL curl, ActorRef fetcher, long expiration) {
+		inProcessURLs.add(fingerprint.applyAsLong(curl.getStringUrl()), curl, fetcher, expiration);
+	}
+	
+	private void completed(String url) {
+		inProcessURLs.complete(fingerprint.applyAsLong(url));
+	}
+	
+	/**
+	 * Puts back in the queue the URLs whose fetcher died or did not complete 
+	 * them in time (or that were in process when the frontier stopped), 
+	 * unless they have already been re-issued too many times.
+	 * Either way an event is journaled, so that recovery takes them back as well
+	 */
+	private void reissue(List<InProcessURLs.Lease> expired) {
+		for (InProcessURLs.Lease lease : expired) {
+			CrawlURL curl = lease.getURL();
+			if (lease.getAttempts() < curl.getPageClass().maxTries()) {
+				log.warning("LEASE EXPIRED: re-issuing "+curl.getStringUrl());
+				ReissuedURL event = new ReissuedURL(curl.getStringUrl(), curl.getPageClass().getName());
+				persist(event, ev -> {
+					queue.recover(curl);
+					snapshotIfDue();
+					dispatch();
+				});
+			}
+			else {
+				log.warning("LEASE EXPIRED: giving up "+curl.getStringUrl());
+				persist(new ForgottenURL(curl.getStringUrl()), ev -> {
+					inProcessURLs.forget(lease.getFingerprint());
+					snapshotIfDue();
+				});
+			}
+		}
+	}
+	
 	private void store(StoreURLMsg msg) {
 		if (queue.add(msg.getURL(), msg.getPageClass())) {
-			persist(msg, (StoreURLMsg ev) -> {});
-			if (!waitingFetchers.isEmpty())
-				self().tell(NEXT, waitingFetchers.poll());
+			persist(msg, (StoreURLMsg ev) -> snapshotIfDue());
+			dispatch();
+		}
+	}
+		
+	/**
+	 * Adds a batch of URLs to the queue in a single pass,
+	 * journaling only the new ones as a single event
+	 */
+	private void store(StoreURLsMsg msg) {
+		List<StoreURLMsg> added = new ArrayList<>();
+		for (StoreURLMsg url : msg.getURLs()) {
+			if (queue.add(url.getURL(), url.getPageClass()))
+				added.add(url);
+		}
+		if (!added.isEmpty()) {
+			persist(new StoreURLsMsg(added), (StoreURLsMsg ev) -> snapshotIfDue());
+			dispatch();
 		}
 	}
 		
 	private void retrieve() {
-		if (!queue.isEmpty()) 
-			persist(NEXT, ev -> sendURL(queue.next()));
-		else waitingFetchers.add(sender());
+		waitingFetchers.add(sender());
+		dispatch();
+	}
+	
+	/**
+	 * Sends the next URL to the first waiting fetcher as soon as the politeness
+	 * of the host allows a new request: if it does not yet, a single timer 
+	 * is armed for the time the next slot opens
+	 */
+	private void dispatch() {
+		if (waitingFetchers.isEmpty() || queue.isEmpty() || dispatchScheduled)
+			return;
+		long delay = politeness.delay(System.currentTimeMillis());
+		if (delay>0) {
+			dispatchScheduled = true;
+			context().system().scheduler().scheduleOnce(
+					Duration.create(delay, TimeUnit.MILLISECONDS),
+					self(), DISPATCH, context().dispatcher(), self());
+		}
+		else {
+			ActorRef fetcher = waitingFetchers.poll();
+			persist(NEXT, ev -> {
+				sendURL(fetcher, queue.next());
+				snapshotIfDue();
+				dispatch();
+			});
+		}
 	}
 	
-	private void sendURL(CrawlURL next) {
-		PageClass pClass = next.getPageClass();
-		long wait = pClass.getWaitTime() + random.nextInt(pClass.getPause());
-		context().system().scheduler().scheduleOnce(
-				Duration.create(wait, TimeUnit.MILLISECONDS),
-				sender(), next, context().dispatcher(), self());
+	private void sendURL(ActorRef fetcher, CrawlURL next) {
+		long now = System.currentTimeMillis();
+		politeness.acquire(next.getPageClass(), now);
+		fetcher.tell(next, self());
+		lease(next, fetcher, now+leaseTime);
 		log.info(""+(++pageCount));
+		if (pageCount%1000==0) reportVisited();
 	}
 	
 	private void complete(OldURLMsg msg) {
 		CrawlURL curl = msg.getURL();
 		writer.tell(curl, self());
+		Metrics.MetricsProvider.get(context().system()).record(CrawlMetrics.PAGE, 0);
 		CompletedURL event = new CompletedURL(curl.getStringUrl());
-		persist(event, ev -> {});
+		persist(event, ev -> {
+			completed(ev.url);
+			snapshotIfDue();
+		});
+	}
+	
+	/* a URL the fetcher gave up on is completed without a record: 
+	 * re-issuing is left to the leases of lost fetchers */
+	private void fail(FailedURLMsg msg) {
+		persist(new CompletedURL(msg.getURL()), ev -> {
+			completed(ev.url);
+			snapshotIfDue();
+		});
+	}
+	
+	private void adaptRate(FetchStatsMsg msg) {
+		CrawlRateController controller = politeness.getController();
+		if (controller!=null) {
+			controller.update(msg.getLatency(), msg.isSuccess());
+			if (log.isDebugEnabled()) log.debug("Crawl rate: "+controller);
+		}
 	}
 	
 	private boolean end() {
@@ -153,10 +405,19 @@ public class CrawlFrontier extends AbstractPersistentActor  {
 					context().parent(), STOP, context().dispatcher(), self());
 			isEnding = true; // job is done..
 			log.info("Max Page Count "+pageCount+" reached: ending...");
+			reportVisited();
 		}
 		return end;
 	}
 	
+	private void reportVisited() {
+		VisitedSet visited = queue.getVisitedSet();
+		if (visited instanceof BloomVisitedSet)
+			log.info("Visited URLs: "+visited.size()+" "+visited);
+		if (politeness.getController()!=null)
+			log.info("Crawl rate: "+politeness.getController());
+	}
+	
 	private void createFetchers(int n) {
 		for (int i=0;i<n;i++) {
 			context().watch(context().actorOf(Props.create(CrawlFetcher.class), "fetcher"+i));
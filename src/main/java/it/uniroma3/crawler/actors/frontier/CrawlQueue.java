@@ -1,46 +1,53 @@
 package it.uniroma3.crawler.actors.frontier;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-
-import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
-
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.HashSet;
-import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.ToLongFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.csvreader.CsvReader;
-import com.csvreader.CsvWriter;
-
 import static it.uniroma3.crawler.factories.CrawlURLFactory.getCrawlUrl;
 import it.uniroma3.crawler.model.CrawlURL;
 import it.uniroma3.crawler.model.PageClass;
 import it.uniroma3.crawler.util.FileUtils;
+import it.uniroma3.crawler.util.FingerprintUtils;
 
 /**
  * A CrawlQueue is a queue of priority-ordered {@link CrawlURL} elements <b>of the same Host</b> with a fixed-size
  * in-memory capacity. 
  * <br>
  * When the in-memory side of the CrawlQueue is full, the exceeding CrawlURL elements are stored 
- * on a persistent-side file queue. 
+ * on a persistent-side {@link QueueStorage}. 
+ * The fingerprints of the visited URLs are also appended to a file,
+ * so that a {@link Snapshot} does not copy the whole {@link VisitedSet}.
  */
 public class CrawlQueue {
 	private static Logger log = Logger.getLogger(CrawlQueue.class.getName());
-	private String storage;
-	private String temp;
+	private QueueStorage storage;
 
 	private int max;
-	private int sizeStorage;
-	private Set<String> visited;
+	private VisitedSet visited;
+	private VisitedLog visitedLog;
+	private ToLongFunction<CharSequence> fingerprint;
 	private PageClass root;
 	private TreeSet<CrawlURL> urls; // discovered URLs 
 	
+	/**
+	 * The state of a CrawlQueue at a given time: the number of logged visited fingerprints,
+	 * the in-memory URLs and the position of the persistent-side.
+	 */
+	public static class Snapshot {
+		private final long visited;
+		private final String[][] urls;
+		private final Object storage;
+		
+		public Snapshot(long visited, String[][] urls, Object storage) {
+			this.visited = visited;
+			this.urls = urls;
+			this.storage = storage;
+		}
+	}
+	
 	/**
 	 * Constructs a new CrawlQueue with the given maximum in-memory capacity<br>
 	 * and the specified root {@link PageClass}. The initialized queue contains
@@ -49,26 +56,83 @@ public class CrawlQueue {
 	 * @param root the root PageClass of a web site
 	 */
 	public CrawlQueue(int max, PageClass root) {
+		this(max, SegmentedStorage.DEFAULT_SEGMENT_SIZE, root);
+	}
+	
+	/**
+	 * Constructs a new CrawlQueue with the given maximum in-memory capacity,<br>
+	 * the given number of elements per persistent-side segment
+	 * and the specified root {@link PageClass}. The initialized queue contains
+	 * the seed of the corresponding web site.
+	 * @param max the max number of elements that can be stored in memory
+	 * @param segmentSize the max number of elements of a persistent-side segment
+	 * @param root the root PageClass of a web site
+	 */
+	public CrawlQueue(int max, int segmentSize, PageClass root) {
+		this(max, root, QueueStorage.create(QueueStorage.SEGMENTS, segmentSize, root));
+	}
+	
+	/**
+	 * Constructs a new CrawlQueue with the given maximum in-memory capacity,<br>
+	 * the specified root {@link PageClass} and the given persistent-side {@link QueueStorage}.
+	 * The initialized queue contains the seed of the corresponding web site.
+	 * @param max the max number of elements that can be stored in memory
+	 * @param root the root PageClass of a web site
+	 * @param storage the persistent-side of this queue
+	 */
+	public CrawlQueue(int max, PageClass root, QueueStorage storage) {
+		this(max, root, storage, new LongVisitedSet(max));
+	}
+	
+	/**
+	 * Constructs a new CrawlQueue with the given maximum in-memory capacity,<br>
+	 * the specified root {@link PageClass}, the given persistent-side {@link QueueStorage}
+	 * and the given {@link VisitedSet}.
+	 * The initialized queue contains the seed of the corresponding web site.
+	 * @param max the max number of elements that can be stored in memory
+	 * @param root the root PageClass of a web site
+	 * @param storage the persistent-side of this queue
+	 * @param visited the set of the URLs already visited
+	 */
+	public CrawlQueue(int max, PageClass root, QueueStorage storage, VisitedSet visited) {
+		this(max, root, storage, visited, FingerprintUtils::sha1);
+	}
+	
+	/**
+	 * Constructs a new CrawlQueue with the given maximum in-memory capacity,<br>
+	 * the specified root {@link PageClass}, the given persistent-side {@link QueueStorage},
+	 * the given {@link VisitedSet} and the function computing the URL fingerprints stored in it.
+	 * The initialized queue contains the seed of the corresponding web site.
+	 * @param max the max number of elements that can be stored in memory
+	 * @param root the root PageClass of a web site
+	 * @param storage the persistent-side of this queue
+	 * @param visited the set of the URLs already visited
+	 * @param fingerprint the URL fingerprint function (see {@link FingerprintUtils})
+	 */
+	public CrawlQueue(int max, PageClass root, QueueStorage storage, VisitedSet visited, 
+			ToLongFunction<CharSequence> fingerprint) {
 		this.max = max;
-		this.visited = new HashSet<>();
+		this.visited = visited;
+		this.fingerprint = fingerprint;
 		this.urls = new TreeSet<>();
 		this.root = root;
+		this.storage = storage;
+		this.visitedLog = new VisitedLog("src/main/resources/storage/visited_"
+				+FileUtils.normalizeURL(root.getDomain())+".log");
 		this.add(getCrawlUrl(root.getDomain(), root));
-		this.storage = "src/main/resources/storage/queue_"
-				+FileUtils.normalizeURL(root.getDomain())+".csv";
-		this.temp = storage+"~";
 	}
 	
 	/**
-	 * Retrieves the next top-priority (in memory) {@link CrawlURL} from this queue.
+	 * Retrieves the next top-priority {@link CrawlURL} from this queue.
 	 * <br>
-	 * Due to the low-efficient implementation of the persistent-side of this queue, 
-	 * there could be elements more important then the one returned in the persistent-side. 
-	 * @return the (in memory) top-priority CrawlURL, or null if the queue is empty
+	 * Unless the persistent-side of this queue preserves the priority order
+	 * (see {@link QueueStorage#precedes}), there could be elements more important 
+	 * then the one returned in the persistent-side. 
+	 * @return the top-priority CrawlURL, or null if the queue is empty
 	 */
 	public CrawlURL next() {
-		if (urls.isEmpty() && sizeStorage>0) 
-			dequeue(max);		
+		if (storage.size()>0 && (urls.isEmpty() || storage.precedes(urls.first()))) 
+			dequeue(Math.max(1, max-urls.size()));		
 		CrawlURL next = urls.pollFirst();
 		return next;
 	}
@@ -79,7 +143,9 @@ public class CrawlQueue {
 	 * @return true if the CrawlURL was added to this queue, false if it was already visited
 	 */
 	public boolean add(CrawlURL curl) {
-		if (visited.add(checksum(curl.getRelativeUrl()))) {
+		long fp = fingerprint.applyAsLong(curl.getRelativeUrl());
+		if (visited.add(fp)) {
+			logVisited(fp);
 			addToQueue(curl);
 			return true;
 		}
@@ -112,7 +178,25 @@ public class CrawlQueue {
 	 * @return the size of this queue
 	 */
 	public int size() {
-		return urls.size()+sizeStorage;
+		return urls.size()+storage.size();
+	}
+	
+	/**
+	 * Returns the set of the URLs already visited
+	 * @return the VisitedSet of this queue
+	 */
+	public VisitedSet getVisitedSet() {
+		return visited;
+	}
+	
+	/**
+	 * Returns the {@link PageClass} with the given name,
+	 * reachable from the root PageClass of this queue
+	 * @param className the PageClass name
+	 * @return the PageClass, or null if not found
+	 */
+	public PageClass getPageClass(String className) {
+		return root.getDescendant(className);
 	}
 	
 	/**
@@ -124,14 +208,63 @@ public class CrawlQueue {
 	}
 	
 	/**
-	 * Deletes the current Storage file if exists
+	 * Deletes the current Storage files if exist.
+	 * The fingerprints of the URLs added since the last snapshot are kept.
 	 * @return true if the Storage was deleted, false otherwise
 	 */
 	public boolean deleteStorage() {
+		return storage.delete() | visitedLog.delete();
+	}
+	
+	/**
+	 * Returns the current state of this queue.
+	 * <br>
+	 * The persistent-side files referenced by the snapshot are kept on disk 
+	 * until {@link #releaseStorage()} is invoked after a later snapshot.
+	 * @return the snapshot
+	 * @throws IOException if the persistent-side cannot be written
+	 */
+	public Snapshot snapshot() throws IOException {
+		String[][] records = new String[urls.size()][];
+		int i = 0;
+		for (CrawlURL curl : urls)
+			records[i++] = new String[] {curl.getStringUrl(), curl.getPageClass().getName()};
+		return new Snapshot(visitedLog.checkpoint(), records, storage.checkpoint());
+	}
+	
+	/**
+	 * Restores this queue to the given snapshot.
+	 * The visited fingerprints logged until the snapshot are added to the current ones,
+	 * the later ones are discarded from the log.
+	 * @param snapshot a snapshot returned by {@link #snapshot()}
+	 */
+	public void restore(Snapshot snapshot) {
+		try {
+			visitedLog.restore(snapshot.visited, visited::add);
+		} catch (IOException ie) {
+			log.log(Level.SEVERE, "Cannot restore visited URLs: "+ie.getMessage());
+		}
+		urls.clear();
+		for (String[] record : snapshot.urls) {
+			CrawlURL curl = getCrawlUrl(record[0], getPageClass(record[1]));
+			if (curl!=null) urls.add(curl);
+		}
+		storage.restore(snapshot.storage);
+	}
+	
+	/**
+	 * Deletes the persistent-side files no longer referenced by the latest snapshot.
+	 * To be invoked once the latest snapshot has been safely stored.
+	 */
+	public void releaseStorage() {
+		storage.release();
+	}
+	
+	private void logVisited(long fp) {
 		try {
-			return Files.deleteIfExists(Paths.get(storage));
+			visitedLog.append(fp);
 		} catch (IOException e) {
-			return false;
+			log.log(Level.WARNING, "Cannot log visited URL fingerprint");
 		}
 	}
 	
@@ -152,18 +285,11 @@ public class CrawlQueue {
 	 
 	/**
 	 * Appends the given {@link CrawlURL} to the persistent-side queue.
-	 * The priority order is not preserved
 	 * @param curl the CrawlURL
 	 */
 	private void enqueue(CrawlURL curl) {		
 		try {
-			CsvWriter writer = new CsvWriter(new FileWriter(storage, true), '\t');
-			writer.write(curl.getRelativeUrl());
-			writer.write(curl.getPageClass().getName());
-			writer.endRecord();
-			writer.flush();
-			writer.close();	
-			sizeStorage++;
+			storage.store(curl);
 		} catch (IOException e) {
 			log.log(Level.WARNING, "Cannot store CURL to Queue Storage");
 		}
@@ -172,47 +298,15 @@ public class CrawlQueue {
 	/**
 	 * Fills the queue with the given number of URLs from the persistent-side of the queue 
 	 * <br><br>
-	 * Note that there is no warranty that the given dequeued URLs are the most relevant
-	 * with respect to the entire persistent-side queue
+	 * Note that, unless the persistent-side preserves the priority order, there is no warranty 
+	 * that the given dequeued URLs are the most relevant with respect to the entire persistent-side queue
 	 * @param quantity number of urls to retrieve
 	 */
 	private void dequeue(int quantity) {
-		int count = quantity;
 		try {
-			CsvWriter writer = new CsvWriter(new FileWriter(temp), '\t');
-			CsvReader reader = new CsvReader(storage, '\t');
-			while (reader.readRecord()) {
-				String relativeURL = reader.get(0);
-				String name = reader.get(1);
-				if (count>0) {
-					PageClass pclass = root.getDescendant(name);
-					String url = root.getDomain() + relativeURL;
-					urls.add(getCrawlUrl(url,pclass));
-					count--;
-				}
-				else writer.writeRecord(reader.getValues());
-			}
-			reader.close();
-			writer.flush();
-			writer.close();
-			Files.move(Paths.get(temp), Paths.get(storage), REPLACE_EXISTING);
-			
-			sizeStorage -= (quantity-count);
+			urls.addAll(storage.poll(quantity));
 		} catch (IOException ie) {
 			log.log(Level.SEVERE, "Cannot retrieve CURL from Queue Storage: "+ie.getMessage());
 		}
 	}
-	
-    private String checksum(String input)  {
-    	MessageDigest md;
-		try {
-			md = MessageDigest.getInstance("SHA");
-	        final byte[] checkSumBytes = md.digest(input.getBytes());
-	        final String result = new String(checkSumBytes);
-	        return result;
-		} catch (NoSuchAlgorithmException e) {
-			log.log(Level.SEVERE, "Cannot make URL checksum");
-			return null;
-		}
-    }
 }
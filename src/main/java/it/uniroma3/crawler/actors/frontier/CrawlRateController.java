@@ -0,0 +1,69 @@
+package it.uniroma3.crawler.actors.frontier;
+
+/**
+ * An AIMD (additive increase, multiplicative decrease) controller of the
+ * request rate of a single web site.
+ * <br>
+ * Every request that succeeds within the target latency raises the rate by 
+ * a fixed amount, while every failed or slow request halves it. The resulting
+ * wait time between two requests is always kept between the given floor and ceiling.
+ */
+public class CrawlRateController {
+	/** Rate mode using the static wait time and random pause of each PageClass */
+	public static final String STATIC = "static";
+	/** Rate mode adapting the wait time to the observed responses */
+	public static final String AIMD = "aimd";
+	/** Requests per second added after a fast, successful request */
+	public static final double INCREASE = 0.05;
+	/** Factor applied to the rate after a failed or slow request */
+	public static final double DECREASE = 0.5;
+
+	private final long minWait, maxWait;
+	private final long targetLatency;
+	private double rate; // requests per second
+
+	/**
+	 * Constructs a new CrawlRateController.
+	 * @param initialWait the initial wait time between two requests, in milliseconds
+	 * @param minWait the min wait time between two requests, in milliseconds
+	 * @param maxWait the max wait time between two requests, in milliseconds
+	 * @param targetLatency the max response time of a request not considered slow, in milliseconds
+	 */
+	public CrawlRateController(long initialWait, long minWait, long maxWait, long targetLatency) {
+		this.minWait = Math.max(1, minWait);
+		this.maxWait = Math.max(this.minWait, maxWait);
+		this.targetLatency = targetLatency;
+		this.rate = 1000.0 / clamp(initialWait);
+	}
+
+	/**
+	 * Updates the rate with the outcome of a request.
+	 * @param latency the response time of the request, in milliseconds
+	 * @param success true if the request succeeded
+	 */
+	public void update(long latency, boolean success) {
+		if (success && latency<=targetLatency)
+			rate += INCREASE;
+		else
+			rate *= DECREASE;
+		rate = 1000.0 / clamp(1000.0 / rate);
+	}
+
+	/**
+	 * Returns the current wait time between two requests
+	 * @return the wait time in milliseconds
+	 */
+	public long getWait() {
+		return Math.round(1000.0 / rate);
+	}
+
+	private double clamp(double wait) {
+		return Math.min(maxWait, Math.max(minWait, wait));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%.2f req/s (wait %d ms)", rate, getWait());
+	}
+
+}
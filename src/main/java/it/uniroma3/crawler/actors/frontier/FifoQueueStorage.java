@@ -0,0 +1,89 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import static it.uniroma3.crawler.factories.CrawlURLFactory.getCrawlUrl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import it.uniroma3.crawler.model.CrawlURL;
+import it.uniroma3.crawler.model.PageClass;
+
+/**
+ * A {@link QueueStorage} appending the stored {@link CrawlURL} elements
+ * to a {@link SegmentedStorage}.
+ * <br>
+ * Elements are retrieved in the same order they were stored:
+ * the priority order is not preserved.
+ */
+public class FifoQueueStorage implements QueueStorage {
+	private final SegmentedStorage segments;
+	private final PageClass root;
+
+	public FifoQueueStorage(String storage, int segmentSize, PageClass root) {
+		this.segments = new SegmentedStorage(storage, segmentSize);
+		this.root = root;
+	}
+
+	@Override
+	public void store(CrawlURL curl) throws IOException {
+		segments.append(toRecord(curl));
+	}
+
+	@Override
+	public List<CrawlURL> poll(int quantity) throws IOException {
+		List<CrawlURL> curls = new ArrayList<>();
+		for (String[] record : segments.poll(quantity)) {
+			CrawlURL curl = toCrawlURL(record, root);
+			if (curl!=null) curls.add(curl);
+		}
+		return curls;
+	}
+
+	@Override
+	public boolean precedes(CrawlURL curl) {
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return segments.size();
+	}
+
+	@Override
+	public boolean delete() {
+		return segments.delete();
+	}
+
+	@Override
+	public Object checkpoint() {
+		return segments.checkpoint();
+	}
+
+	@Override
+	public void release() {
+		segments.release();
+	}
+
+	@Override
+	public void restore(Object checkpoint) {
+		segments.restore((SegmentedStorage.Checkpoint) checkpoint);
+	}
+
+	/**
+	 * Closes this storage, deleting the segments not referenced by the latest checkpoint
+	 */
+	void discard() {
+		segments.discard();
+	}
+
+	static String[] toRecord(CrawlURL curl) {
+		return new String[] {curl.getRelativeUrl(), curl.getPageClass().getName()};
+	}
+
+	static CrawlURL toCrawlURL(String[] record, PageClass root) {
+		PageClass pclass = root.getDescendant(record[1]);
+		return getCrawlUrl(root.getDomain() + record[0], pclass);
+	}
+
+}
@@ -0,0 +1,70 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import java.util.Random;
+
+import it.uniroma3.crawler.model.PageClass;
+
+/**
+ * The politeness budget of a single host: the time at which the next request
+ * to the host is allowed.
+ * <br>
+ * Each request moves the next allowed time forward by the wait time of the
+ * requested {@link PageClass} plus a random pause, counted from the later of
+ * the current time and the previous allowed time. Requests are therefore paced
+ * exactly, no matter how many fetchers are asking for URLs of the same host.
+ * <br>
+ * If a {@link CrawlRateController} is given, its adaptive wait time replaces 
+ * the wait time and the random pause of the PageClass.
+ */
+public class HostPoliteness {
+	private final Random random;
+	private final CrawlRateController controller;
+	private long nextAllowed;
+
+	public HostPoliteness() {
+		this(new Random(), null);
+	}
+
+	public HostPoliteness(CrawlRateController controller) {
+		this(new Random(), controller);
+	}
+
+	public HostPoliteness(Random random, CrawlRateController controller) {
+		this.random = random;
+		this.controller = controller;
+	}
+
+	/**
+	 * Returns the time to wait before the next request is allowed.
+	 * @param now the current time in milliseconds
+	 * @return the delay in milliseconds, 0 if a request is allowed now
+	 */
+	public long delay(long now) {
+		return Math.max(0, nextAllowed-now);
+	}
+
+	/**
+	 * Takes the current slot for a request of the given {@link PageClass}.
+	 * @param pclass the PageClass of the requested URL
+	 * @param now the current time in milliseconds
+	 * @return the time in milliseconds at which the following request is allowed
+	 */
+	public long acquire(PageClass pclass, long now) {
+		long wait;
+		if (controller!=null)
+			wait = controller.getWait();
+		else
+			wait = pclass.getWaitTime() + ((pclass.getPause()>0) ? random.nextInt(pclass.getPause()) : 0);
+		nextAllowed = Math.max(now, nextAllowed) + wait;
+		return nextAllowed;
+	}
+
+	/**
+	 * Returns the controller of the request rate of the host
+	 * @return the CrawlRateController, or null if the rate is static
+	 */
+	public CrawlRateController getController() {
+		return controller;
+	}
+
+}
@@ -0,0 +1,177 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import akka.actor.ActorRef;
+import it.uniroma3.crawler.model.CrawlURL;
+
+/**
+ * The {@link CrawlURL} elements sent to a fetcher and not completed yet,
+ * indexed by URL fingerprint.
+ * <br>
+ * Each URL holds a lease: when it expires, or when its fetcher terminates,
+ * the URL can be taken back and re-issued. Leases are kept in insertion order,
+ * so that the expired ones are always found at the beginning.
+ * <br>
+ * The number of times a URL has been taken back is remembered until it is
+ * completed, so that a URL that never completes is not re-issued forever.
+ */
+public class InProcessURLs {
+	private final LinkedHashMap<Long, Lease> leases;
+	private final Map<Long, Integer> reissued;
+
+	/**
+	 * A URL sent to a fetcher
+	 */
+	public static class Lease {
+		private final long fingerprint;
+		private final CrawlURL curl;
+		private final ActorRef fetcher;
+		private final long expiration;
+		private final int attempts;
+
+		private Lease(long fingerprint, CrawlURL curl, ActorRef fetcher,
+				long expiration, int attempts) {
+			this.fingerprint = fingerprint;
+			this.curl = curl;
+			this.fetcher = fetcher;
+			this.expiration = expiration;
+			this.attempts = attempts;
+		}
+
+		public long getFingerprint() {
+			return fingerprint;
+		}
+
+		public CrawlURL getURL() {
+			return curl;
+		}
+
+		/**
+		 * Returns the number of times the URL has been taken back before
+		 * @return the number of previous attempts
+		 */
+		public int getAttempts() {
+			return attempts;
+		}
+	}
+
+	public InProcessURLs() {
+		this.leases = new LinkedHashMap<>();
+		this.reissued = new HashMap<>();
+	}
+
+	/**
+	 * Adds a URL sent to the given fetcher.
+	 * @param fingerprint the URL fingerprint
+	 * @param curl the CrawlURL
+	 * @param fetcher the fetcher, or null if unknown
+	 * @param expiration the time in milliseconds when the lease expires
+	 */
+	public void add(long fingerprint, CrawlURL curl, ActorRef fetcher, long expiration) {
+		leases.remove(fingerprint); // keep insertion order
+		leases.put(fingerprint, new Lease(fingerprint, curl, fetcher, expiration,
+				reissued.getOrDefault(fingerprint, 0)));
+	}
+
+	/**
+	 * Removes the URL with the given fingerprint, once completed.
+	 * @param fingerprint the URL fingerprint
+	 * @return the removed CrawlURL, or null if not found
+	 */
+	public CrawlURL complete(long fingerprint) {
+		reissued.remove(fingerprint);
+		Lease lease = leases.remove(fingerprint);
+		return (lease!=null) ? lease.curl : null;
+	}
+
+	/**
+	 * Takes back the URLs whose lease has expired at the given time.
+	 * @param now the current time in milliseconds
+	 * @return the expired leases
+	 */
+	public List<Lease> expire(long now) {
+		List<Lease> expired = new ArrayList<>();
+		Iterator<Lease> it = leases.values().iterator();
+		while (it.hasNext()) {
+			Lease lease = it.next();
+			if (lease.expiration>now) break;
+			it.remove();
+			expired.add(lease);
+		}
+		expired.forEach(this::takeBack);
+		return expired;
+	}
+
+	/**
+	 * Takes back the URLs sent to the given fetcher.
+	 * @param fetcher the fetcher
+	 * @return the leases of the fetcher
+	 */
+	public List<Lease> expire(ActorRef fetcher) {
+		List<Lease> expired = leases.values().stream()
+				.filter(l -> fetcher.equals(l.fetcher))
+				.collect(Collectors.toList());
+		expired.forEach(l -> leases.remove(l.fingerprint));
+		expired.forEach(this::takeBack);
+		return expired;
+	}
+
+	/**
+	 * Takes back the URL with the given fingerprint, as if its lease had expired.
+	 * @param fingerprint the URL fingerprint
+	 * @return the lease taken back, or null if not found
+	 */
+	public Lease takeBack(long fingerprint) {
+		Lease lease = leases.remove(fingerprint);
+		if (lease!=null) takeBack(lease);
+		return lease;
+	}
+
+	/**
+	 * Forgets the URL with the given fingerprint, which will not be re-issued.
+	 * @param fingerprint the URL fingerprint
+	 */
+	public void forget(long fingerprint) {
+		reissued.remove(fingerprint);
+		leases.remove(fingerprint);
+	}
+
+	/**
+	 * Returns the URLs in process
+	 * @return the CrawlURLs, in the order they were added
+	 */
+	public Collection<CrawlURL> getURLs() {
+		return leases.values().stream().map(l -> l.curl).collect(Collectors.toList());
+	}
+
+	public int size() {
+		return leases.size();
+	}
+
+	public boolean isEmpty() {
+		return leases.isEmpty();
+	}
+
+	public void clear() {
+		leases.clear();
+		reissued.clear();
+	}
+
+	private void takeBack(Lease lease) {
+		reissued.put(lease.fingerprint, lease.attempts+1);
+	}
+
+	@Override
+	public String toString() {
+		return getURLs().toString();
+	}
+
+}
@@ -0,0 +1,103 @@
+package it.uniroma3.crawler.actors.frontier;
+
+/**
+ * A {@link VisitedSet} backed by an open-addressed, linear-probing table of primitive longs.
+ * <br>
+ * Each fingerprint takes 8 bytes (16 at the max load factor) and no object is allocated
+ * per URL. The value 0 marks an empty slot, so it is stored as 1.
+ * <br>
+ * The table holds at most 2<sup>30</sup> slots, filled up to {@link #MAX_LOAD_FACTOR}:
+ * larger crawls need a {@link MappedVisitedSet}.
+ */
+public class LongVisitedSet implements VisitedSet {
+	private static final double LOAD_FACTOR = 0.5;
+	private static final double MAX_LOAD_FACTOR = 0.75; // once the table cannot grow
+	private static final int MAX_SLOTS = 1<<30;
+
+	private long[] table;
+	private int mask;
+	private long size;
+
+	public LongVisitedSet(int capacity) {
+		int slots = Integer.highestOneBit(Math.max(16, (int) Math.min(1<<29, capacity/LOAD_FACTOR)));
+		this.table = new long[slots<<1];
+		this.mask = table.length-1;
+	}
+
+	@Override
+	public boolean add(long fingerprint) {
+		long fp = (fingerprint==0) ? 1 : fingerprint;
+		int i = slot(fp, mask);
+		while (table[i]!=0) {
+			if (table[i]==fp) return false;
+			i = (i+1) & mask;
+		}
+		occupy(i, fp);
+		return true;
+	}
+
+	@Override
+	public void insert(long fingerprint) {
+		long fp = (fingerprint==0) ? 1 : fingerprint;
+		int i = slot(fp, mask);
+		while (table[i]!=0)
+			i = (i+1) & mask;
+		occupy(i, fp);
+	}
+
+	@Override
+	public boolean contains(long fingerprint) {
+		long fp = (fingerprint==0) ? 1 : fingerprint;
+		int i = slot(fp, mask);
+		while (table[i]!=0) {
+			if (table[i]==fp) return true;
+			i = (i+1) & mask;
+		}
+		return false;
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	@Override
+	public long[] toArray() {
+		long[] fps = new long[(int) size];
+		int n = 0;
+		for (long fp : table)
+			if (fp!=0) fps[n++] = fp;
+		return fps;
+	}
+
+	private void occupy(int i, long fp) {
+		if (table.length>=MAX_SLOTS && size>=MAX_SLOTS*MAX_LOAD_FACTOR)
+			throw new IllegalStateException("Visited set full at "+size
+					+" fingerprints: use the \""+MAPPED+"\" visited set");
+		table[i] = fp;
+		if (++size > table.length*LOAD_FACTOR && table.length<MAX_SLOTS)
+			grow();
+	}
+
+	private void grow() {
+		long[] old = table;
+		table = new long[old.length<<1];
+		mask = table.length-1;
+		for (long fp : old) {
+			if (fp!=0) {
+				int i = slot(fp, mask);
+				while (table[i]!=0) i = (i+1) & mask;
+				table[i] = fp;
+			}
+		}
+	}
+
+	/**
+	 * Spreads the fingerprint bits over the table index
+	 */
+	static int slot(long fp, long mask) {
+		long h = fp * 0x9E3779B97F4A7C15L;
+		return (int) ((h ^ (h>>>32)) & mask);
+	}
+
+}
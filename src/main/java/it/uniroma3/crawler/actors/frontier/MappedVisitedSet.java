@@ -0,0 +1,200 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * A {@link VisitedSet} backed by an open-addressed, linear-probing table of longs
+ * stored in a memory-mapped file, so that it can grow past the heap size
+ * without adding any pressure on the garbage collector.
+ * <br>
+ * The file is mapped in chunks of at most 1GB. When the table is half full,
+ * it is rehashed into a new file of double capacity and the old mappings are released.
+ * Any existing file at the given path is overwritten: the table is a working copy,
+ * rebuilt by {@link CrawlQueue#restore} after a restart.
+ * The value 0 marks an empty slot, so it is stored as 1.
+ */
+public class MappedVisitedSet implements VisitedSet {
+	private static final double LOAD_FACTOR = 0.5;
+	private static final int CHUNK_BITS = 27; // longs per chunk
+
+	private final String path;
+	private MappedByteBuffer[] buffers;
+	private LongBuffer[] chunks;
+	private long mask;
+	private long size;
+
+	/**
+	 * Constructs a new MappedVisitedSet in the given file.
+	 * @param path the path of the mapped file
+	 * @param capacity the expected number of fingerprints
+	 * @throws IOException if the file cannot be mapped
+	 */
+	public MappedVisitedSet(String path, int capacity) throws IOException {
+		this.path = path;
+		long slots = Long.highestOneBit(Math.max(16, (long) (capacity/LOAD_FACTOR)))<<1;
+		this.buffers = map(Paths.get(path), slots);
+		this.chunks = view(buffers);
+		this.mask = slots-1;
+	}
+
+	@Override
+	public boolean add(long fingerprint) {
+		long fp = (fingerprint==0) ? 1 : fingerprint;
+		long i = LongVisitedSet.slot(fp, mask);
+		long current;
+		while ((current = get(chunks, i))!=0) {
+			if (current==fp) return false;
+			i = (i+1) & mask;
+		}
+		occupy(i, fp);
+		return true;
+	}
+
+	@Override
+	public void insert(long fingerprint) {
+		long fp = (fingerprint==0) ? 1 : fingerprint;
+		long i = LongVisitedSet.slot(fp, mask);
+		while (get(chunks, i)!=0)
+			i = (i+1) & mask;
+		occupy(i, fp);
+	}
+
+	@Override
+	public boolean contains(long fingerprint) {
+		long fp = (fingerprint==0) ? 1 : fingerprint;
+		long i = LongVisitedSet.slot(fp, mask);
+		long current;
+		while ((current = get(chunks, i))!=0) {
+			if (current==fp) return true;
+			i = (i+1) & mask;
+		}
+		return false;
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	@Override
+	public long[] toArray() {
+		if (size>Integer.MAX_VALUE-8)
+			throw new IllegalStateException("Too many fingerprints for an array: "+size);
+		long[] fps = new long[(int) size];
+		int n = 0;
+		for (long s=0; s<=mask; s++) {
+			long fp = get(chunks, s);
+			if (fp!=0) fps[n++] = fp;
+		}
+		return fps;
+	}
+
+	private void occupy(long i, long fp) {
+		put(chunks, i, fp);
+		if (++size > (mask+1)*LOAD_FACTOR)
+			grow();
+	}
+
+	/**
+	 * Rehashes the table into a new file of double capacity,
+	 * which then replaces the current one.
+	 */
+	private void grow() {
+		Path current = Paths.get(path);
+		Path next = Paths.get(path+"~");
+		long newMask = (mask<<1)|1;
+		if (newMask<0 || newMask>>>CHUNK_BITS>=Integer.MAX_VALUE)
+			throw new IllegalStateException("Visited set "+path+" cannot grow past "+size);
+		try {
+			MappedByteBuffer[] newBuffers = map(next, newMask+1);
+			LongBuffer[] table = view(newBuffers);
+			for (long s=0; s<=mask; s++) {
+				long fp = get(chunks, s);
+				if (fp!=0) {
+					long i = LongVisitedSet.slot(fp, newMask);
+					while (get(table, i)!=0) i = (i+1) & newMask;
+					put(table, i, fp);
+				}
+			}
+			unmap(buffers);
+			Files.move(next, current, REPLACE_EXISTING);
+			this.buffers = newBuffers;
+			this.chunks = table;
+			this.mask = newMask;
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot grow visited set "+path, e);
+		}
+	}
+
+	private static MappedByteBuffer[] map(Path file, long slots) throws IOException {
+		long chunkSlots = Math.min(slots, 1L<<CHUNK_BITS);
+		MappedByteBuffer[] buffers = new MappedByteBuffer[(int) (slots/chunkSlots)];
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+			raf.setLength(0);
+			raf.setLength(slots*8);
+			FileChannel channel = raf.getChannel();
+			for (int c=0; c<buffers.length; c++)
+				buffers[c] = channel.map(MapMode.READ_WRITE, c*chunkSlots*8, chunkSlots*8);
+		}
+		return buffers;
+	}
+
+	private static LongBuffer[] view(MappedByteBuffer[] buffers) {
+		LongBuffer[] table = new LongBuffer[buffers.length];
+		for (int c=0; c<buffers.length; c++)
+			table[c] = buffers[c].asLongBuffer();
+		return table;
+	}
+
+	/**
+	 * Releases the given mappings at once, instead of waiting for them to be 
+	 * garbage collected: the buffers must not be accessed anymore.
+	 * If the running JVM does not allow it, they are left to the garbage collector.
+	 */
+	static void unmap(MappedByteBuffer[] buffers) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			Object unsafe = theUnsafe.get(null);
+			for (MappedByteBuffer buffer : buffers)
+				invokeCleaner.invoke(unsafe, buffer);
+		} catch (NoSuchMethodException e) { // Java 8
+			try {
+				for (MappedByteBuffer buffer : buffers) {
+					Method cleaner = buffer.getClass().getMethod("cleaner");
+					cleaner.setAccessible(true);
+					Object clean = cleaner.invoke(buffer);
+					clean.getClass().getMethod("clean").invoke(clean);
+				}
+			} catch (ReflectiveOperationException | RuntimeException e8) {
+				return;
+			}
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return;
+		}
+	}
+
+	private static long get(LongBuffer[] table, long slot) {
+		return table[(int) (slot>>>CHUNK_BITS)].get((int) (slot & ((1L<<CHUNK_BITS)-1)));
+	}
+
+	private static void put(LongBuffer[] table, long slot, long fp) {
+		table[(int) (slot>>>CHUNK_BITS)].put((int) (slot & ((1L<<CHUNK_BITS)-1)), fp);
+	}
+
+}
@@ -0,0 +1,92 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import java.io.IOException;
+import java.util.List;
+
+import it.uniroma3.crawler.model.CrawlURL;
+import it.uniroma3.crawler.model.PageClass;
+import it.uniroma3.crawler.util.FileUtils;
+
+/**
+ * The persistent-side of a {@link CrawlQueue}, storing the {@link CrawlURL} elements
+ * exceeding its in-memory capacity.
+ */
+public interface QueueStorage {
+	/** Spill mode appending URLs to a FIFO of file segments */
+	String SEGMENTS = "segments";
+	/** Spill mode writing URLs as priority-ordered runs, merged on retrieval */
+	String SORTED = "sorted";
+
+	/**
+	 * Creates the QueueStorage of the web site with the given root {@link PageClass}.
+	 * @param mode the spill mode, either {@link #SEGMENTS} or {@link #SORTED}
+	 * @param size the max number of elements of a single file segment or run
+	 * @param root the root PageClass of a web site
+	 * @return the QueueStorage
+	 */
+	static QueueStorage create(String mode, int size, PageClass root) {
+		String storage = "src/main/resources/storage/queue_"
+				+FileUtils.normalizeURL(root.getDomain())+".csv";
+		if (SORTED.equals(mode))
+			return new SortedQueueStorage(storage, size, root);
+		return new FifoQueueStorage(storage, size, root);
+	}
+
+	/**
+	 * Stores the given {@link CrawlURL}.
+	 * @param curl the CrawlURL
+	 * @throws IOException if the CrawlURL cannot be stored
+	 */
+	void store(CrawlURL curl) throws IOException;
+
+	/**
+	 * Retrieves and removes at most the given number of elements.
+	 * @param quantity the max number of elements to retrieve
+	 * @return the retrieved CrawlURLs
+	 * @throws IOException if the storage cannot be read
+	 */
+	List<CrawlURL> poll(int quantity) throws IOException;
+
+	/**
+	 * Returns true if this storage holds an element that must be retrieved
+	 * before the given {@link CrawlURL}.
+	 * Storages that do not preserve the priority order always return false.
+	 * @param curl the CrawlURL
+	 * @return true if a stored element has a higher priority
+	 */
+	boolean precedes(CrawlURL curl);
+
+	/**
+	 * Returns the number of stored elements
+	 * @return the number of elements
+	 */
+	int size();
+
+	/**
+	 * Deletes any file of this storage, including the ones left by a previous run.
+	 * @return true if at least a file was deleted
+	 */
+	boolean delete();
+
+	/**
+	 * Returns the current position of this storage, to be saved in a snapshot.
+	 * <br>
+	 * Files still referenced by the latest checkpoint are not deleted until {@link #release()}.
+	 * @return an opaque checkpoint
+	 * @throws IOException if the storage cannot be written
+	 */
+	Object checkpoint() throws IOException;
+
+	/**
+	 * Deletes the files that are no longer referenced by the latest checkpoint.
+	 * To be invoked once the latest checkpoint has been safely stored.
+	 */
+	void release();
+
+	/**
+	 * Restores this storage to the given checkpoint, discarding any later change.
+	 * @param checkpoint a checkpoint returned by {@link #checkpoint()}
+	 */
+	void restore(Object checkpoint);
+
+}
@@ -0,0 +1,354 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.csvreader.CsvReader;
+import com.csvreader.CsvWriter;
+
+/**
+ * An append-only, segmented file queue of tab-separated records.
+ * <br>
+ * Records are appended to the tail segment, which is sealed and replaced by a new one
+ * once it holds the configured number of records. The tail segment is written through
+ * a memory-mapped region, so that an appended record is in the file at once 
+ * without a write call per record. Records are polled sequentially
+ * from the head segment through a cursor, so no file is ever rewritten:
+ * a drained segment is simply deleted.
+ * <br><br>
+ * Segment files are named after the given storage path: the first segment is the storage
+ * path itself, the following ones are suffixed with a progressive number
+ * (<i>queue.csv, queue.csv.1, queue.csv.2, ...</i>).
+ * <br><br>
+ * Once a {@link Checkpoint} has been taken, drained segments are kept on disk 
+ * until they are no longer referenced by the latest checkpoint (see {@link #release()}), 
+ * so that the storage can always be restored to that checkpoint. A checkpoint records
+ * how far the tail segment has been written, so the tail is cut back to that offset
+ * on restore instead of being sealed at every checkpoint.
+ */
+public class SegmentedStorage {
+	public static final int DEFAULT_SEGMENT_SIZE = 100000;
+	private static final int MAP_SIZE = 1<<16; // bytes of the tail segment mapped at once
+
+	private final String storage;
+	private final int segmentSize;
+
+	private int head, tail; // first and last segment numbers
+	private int tailRecords; // records written to the tail segment
+	private long tailBytes; // bytes written to the tail segment
+	private int size;
+	private int consumed; // records read from the head segment
+	private MappedByteBuffer tailRegion; // mapped after the bytes written to the tail
+	private final RecordWriter record;
+	private final CsvWriter csv;
+	private final CharsetEncoder utf8;
+	private CsvReader reader;
+	
+	private boolean retain; // true if a checkpoint has been taken
+	private List<Integer> drained; // drained segments, not deleted yet
+	private List<Integer> releasable; // drained segments not referenced by the latest checkpoint
+	
+	/**
+	 * The position of a SegmentedStorage at a given time.
+	 */
+	public static class Checkpoint {
+		private final int head, consumed, tail, tailRecords, size;
+		private final long tailBytes;
+		
+		public Checkpoint(int head, int consumed, int tail, int tailRecords, long tailBytes, int size) {
+			this.head = head;
+			this.consumed = consumed;
+			this.tail = tail;
+			this.tailRecords = tailRecords;
+			this.tailBytes = tailBytes;
+			this.size = size;
+		}
+	}
+	
+	/**
+	 * The text of a record, encoded straight into the tail segment
+	 */
+	private static class RecordWriter extends CharArrayWriter {
+		CharBuffer chars() {
+			return CharBuffer.wrap(buf, 0, count);
+		}
+	}
+
+	/**
+	 * Constructs a new SegmentedStorage with the default segment size.
+	 * @param storage the path of the first segment
+	 */
+	public SegmentedStorage(String storage) {
+		this(storage, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Constructs a new SegmentedStorage.
+	 * @param storage the path of the first segment
+	 * @param segmentSize the max number of records of a single segment
+	 */
+	public SegmentedStorage(String storage, int segmentSize) {
+		this.storage = storage;
+		this.segmentSize = Math.max(1, segmentSize);
+		this.drained = new ArrayList<>();
+		this.releasable = new ArrayList<>();
+		this.record = new RecordWriter();
+		this.csv = new CsvWriter(record, '\t');
+		this.utf8 = StandardCharsets.UTF_8.newEncoder();
+	}
+
+	/**
+	 * Appends a record to the tail segment.
+	 * @param values the record values
+	 * @throws IOException if the record cannot be written
+	 */
+	public void append(String... values) throws IOException {
+		record.reset();
+		csv.writeRecord(values);
+		CharBuffer chars = record.chars();
+		if (tailRegion==null)
+			mapTail(0);
+		int start = tailRegion.position();
+		if (utf8.reset().encode(chars, tailRegion, true).isOverflow()) {
+			// the record goes at the start of the next region
+			mapTail((int) Math.ceil(chars.rewind().remaining()*utf8.maxBytesPerChar()));
+			start = 0;
+			utf8.reset().encode(chars, tailRegion, true);
+		}
+		tailBytes += tailRegion.position()-start;
+		size++;
+		if (++tailRecords>=segmentSize)
+			seal();
+	}
+
+	/**
+	 * Retrieves and removes at most the given number of records,
+	 * in the same order they were appended.
+	 * @param quantity the max number of records to retrieve
+	 * @return the retrieved records
+	 * @throws IOException if the storage cannot be read
+	 */
+	public List<String[]> poll(int quantity) throws IOException {
+		List<String[]> records = new ArrayList<>();
+		while (records.size()<quantity && size>0) {
+			if (reader==null)
+				openReader();
+			if (reader.readRecord()) {
+				records.add(reader.getValues());
+				consumed++;
+				size--;
+			}
+			else dropHead();
+		}
+		return records;
+	}
+
+	/**
+	 * Returns the number of records currently stored
+	 * @return the number of records
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Closes any open segment and deletes every segment file of this storage,
+	 * including the ones left by a previous run.
+	 * @return true if at least a segment was deleted
+	 */
+	public boolean delete() {
+		closeTail();
+		closeReader();
+		head = tail = tailRecords = size = consumed = 0;
+		tailBytes = 0;
+		retain = false;
+		drained.clear();
+		releasable.clear();
+		return deleteFiles(storage, "(\\.[0-9]+)?");
+	}
+	
+	/**
+	 * Closes any open segment and deletes the segments of this storage
+	 * that are not referenced by the latest checkpoint, if any.
+	 */
+	public void discard() {
+		closeTail();
+		closeReader();
+		if (!retain) delete();
+		else {
+			for (int n=head; n<=tail; n++) drained.add(n);
+			size = 0;
+		}
+	}
+	
+	/**
+	 * Returns the current position of this storage, 
+	 * including the offset reached in the tail segment, which is kept open.
+	 * <br>
+	 * From now on, drained segments are deleted only by {@link #release()}.
+	 * @return the checkpoint
+	 */
+	public Checkpoint checkpoint() {
+		retain = true;
+		releasable.addAll(drained);
+		drained.clear();
+		return new Checkpoint(head, consumed, tail, tailRecords, tailBytes, size);
+	}
+	
+	/**
+	 * Deletes the segments drained before the latest checkpoint.
+	 * To be invoked once the latest checkpoint has been safely stored.
+	 */
+	public void release() {
+		for (int n : releasable) {
+			try {
+				Files.deleteIfExists(Paths.get(segment(n)));
+			} catch (IOException e) {
+				continue;
+			}
+		}
+		releasable.clear();
+	}
+	
+	/**
+	 * Restores this storage to the given checkpoint, deleting the segments 
+	 * written after it and cutting the tail segment back to the checkpoint offset.
+	 * @param checkpoint the checkpoint
+	 */
+	public void restore(Checkpoint checkpoint) {
+		closeTail();
+		closeReader();
+		Path path = Paths.get(storage).toAbsolutePath();
+		Pattern number = Pattern.compile(Pattern.quote(path.getFileName().toString())+"(\\.([0-9]+))?");
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(path.getParent())) {
+			for (Path file : files) {
+				Matcher m = number.matcher(file.getFileName().toString());
+				if (m.matches()) {
+					int n = (m.group(2)!=null) ? Integer.parseInt(m.group(2)) : 0;
+					if (n<checkpoint.head || n>checkpoint.tail)
+						Files.deleteIfExists(file);
+				}
+			}
+		} catch (IOException e) {
+			// segments written after the checkpoint are overwritten anyway
+		}
+		truncate(checkpoint.tail, checkpoint.tailBytes);
+		head = checkpoint.head;
+		consumed = checkpoint.consumed;
+		tail = checkpoint.tail;
+		size = checkpoint.size;
+		tailRecords = checkpoint.tailRecords;
+		tailBytes = checkpoint.tailBytes;
+		retain = true;
+		drained.clear();
+		releasable.clear();
+	}
+	
+	/**
+	 * Deletes every file in the directory of the given storage path whose name
+	 * is made up of the storage file name followed by the given suffix.
+	 * @param storage the storage path
+	 * @param suffix the regular expression the rest of the file name must match
+	 * @return true if at least a file was deleted
+	 */
+	static boolean deleteFiles(String storage, String suffix) {
+		boolean deleted = false;
+		Path path = Paths.get(storage).toAbsolutePath();
+		String name = Pattern.quote(path.getFileName().toString());
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(path.getParent(),
+				p -> p.getFileName().toString().matches(name+suffix))) {
+			for (Path file : files)
+				deleted |= Files.deleteIfExists(file);
+		} catch (IOException e) {
+			return deleted;
+		}
+		return deleted;
+	}
+
+	/**
+	 * Reading is only performed on sealed segments:
+	 * if the head is still being written, it is sealed first.
+	 */
+	private void openReader() throws IOException {
+		if (head==tail)
+			seal();
+		reader = new CsvReader(segment(head), '\t', StandardCharsets.UTF_8);
+		for (int i=0; i<consumed; i++) 
+			reader.skipRecord();
+	}
+
+	private void dropHead() throws IOException {
+		closeReader();
+		if (retain) drained.add(head);
+		else Files.deleteIfExists(Paths.get(segment(head)));
+		consumed = 0;
+		head++;
+	}
+
+	/**
+	 * Maps the region of the tail segment following the bytes written so far,
+	 * extending the file: the part left unused is cut off by {@link #closeTail()}.
+	 */
+	private void mapTail(int minSize) throws IOException {
+		closeTail();
+		long regionSize = Math.max(MAP_SIZE, minSize);
+		try (RandomAccessFile raf = new RandomAccessFile(segment(tail), "rw")) {
+			raf.setLength(tailBytes+regionSize);
+			tailRegion = raf.getChannel().map(MapMode.READ_WRITE, tailBytes, regionSize);
+		}
+	}
+
+	private void seal() {
+		closeTail();
+		tail++;
+		tailRecords = 0;
+		tailBytes = 0;
+	}
+
+	private void closeTail() {
+		if (tailRegion!=null) {
+			MappedVisitedSet.unmap(new MappedByteBuffer[] {tailRegion});
+			tailRegion = null;
+			truncate(tail, tailBytes);
+		}
+	}
+
+	/* cuts the given segment to the given length, if longer */
+	private void truncate(int n, long length) {
+		try (FileChannel channel = FileChannel.open(Paths.get(segment(n)), WRITE)) {
+			if (channel.size()>length)
+				channel.truncate(length);
+		} catch (IOException e) {
+			return; // not written yet
+		}
+	}
+
+	private void closeReader() {
+		if (reader!=null) {
+			reader.close();
+			reader = null;
+		}
+	}
+
+	private String segment(int n) {
+		return (n==0) ? storage : storage+"."+n;
+	}
+
+}
@@ -0,0 +1,280 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import it.uniroma3.crawler.model.CrawlURL;
+import it.uniroma3.crawler.model.PageClass;
+
+/**
+ * A {@link QueueStorage} preserving the priority order of the stored {@link CrawlURL} elements.
+ * <br>
+ * Stored elements are buffered in memory and, once the buffer is full, written to disk
+ * as a run sorted by {@link CrawlURL#compareTo}. Elements are retrieved with a k-way merge
+ * of the heads of the runs and of the buffer, so that the top-priority element is always
+ * the first to be returned.
+ * <br>
+ * When the number of runs exceeds {@link #MAX_RUNS}, the {@link #MERGE_FACTOR} smallest
+ * runs are merged into a single run, so that each element is rewritten only a logarithmic
+ * number of times.
+ */
+public class SortedQueueStorage implements QueueStorage {
+	public static final int MAX_RUNS = 64;
+	public static final int MERGE_FACTOR = 16;
+	private static final Comparator<Run> BY_HEAD = (r1,r2) -> r1.head.compareTo(r2.head);
+
+	private final String storage;
+	private final int runSize;
+	private final PageClass root;
+
+	private TreeSet<CrawlURL> buffer;
+	private PriorityQueue<Run> runs;
+	private List<Run> discarded; // exhausted runs, not deleted yet
+	private List<Run> releasable; // exhausted runs not referenced by the latest checkpoint
+	private int runCount;
+	private int size;
+
+	/**
+	 * A sorted run on disk, with its head element in memory
+	 */
+	private static class Run {
+		private final int number;
+		private final FifoQueueStorage file;
+		private CrawlURL head;
+
+		private Run(int number, FifoQueueStorage file) {
+			this.number = number;
+			this.file = file;
+		}
+
+		/**
+		 * Replaces the head of this run with the following element
+		 * @return false if the run is exhausted
+		 */
+		private boolean advance() throws IOException {
+			List<CrawlURL> next = file.poll(1);
+			while (next.isEmpty() && file.size()>0)
+				next = file.poll(1);
+			head = (next.isEmpty()) ? null : next.get(0);
+			return head!=null;
+		}
+
+		/**
+		 * @return the number of elements left in this run, head included
+		 */
+		private int size() {
+			return file.size()+1;
+		}
+	}
+	
+	/**
+	 * The position of a SortedQueueStorage at a given time.
+	 */
+	public static class Checkpoint {
+		private final int runCount, size;
+		private final int[] numbers;
+		private final SegmentedStorage.Checkpoint[] files;
+		private final String[][] heads;
+		private final String[][] buffer;
+		
+		public Checkpoint(int runCount, int size, int[] numbers, 
+				SegmentedStorage.Checkpoint[] files, String[][] heads, String[][] buffer) {
+			this.runCount = runCount;
+			this.size = size;
+			this.numbers = numbers;
+			this.files = files;
+			this.heads = heads;
+			this.buffer = buffer;
+		}
+	}
+
+	public SortedQueueStorage(String storage, int runSize, PageClass root) {
+		this.storage = storage;
+		this.runSize = Math.max(1, runSize);
+		this.root = root;
+		this.buffer = new TreeSet<>();
+		this.runs = new PriorityQueue<>(BY_HEAD);
+		this.discarded = new ArrayList<>();
+		this.releasable = new ArrayList<>();
+	}
+
+	@Override
+	public void store(CrawlURL curl) throws IOException {
+		if (buffer.add(curl)) size++;
+		if (buffer.size()>=runSize)
+			flush();
+	}
+
+	@Override
+	public List<CrawlURL> poll(int quantity) throws IOException {
+		List<CrawlURL> curls = new ArrayList<>();
+		while (curls.size()<quantity && size>0) {
+			Run run = runs.peek();
+			if (run==null || (!buffer.isEmpty() && buffer.first().compareTo(run.head)<0))
+				curls.add(buffer.pollFirst());
+			else {
+				curls.add(runs.poll().head);
+				if (run.advance()) runs.add(run);
+				else discard(run);
+			}
+			size--;
+		}
+		return curls;
+	}
+
+	@Override
+	public boolean precedes(CrawlURL curl) {
+		CrawlURL first = (buffer.isEmpty()) ? null : buffer.first();
+		Run run = runs.peek();
+		if (run!=null && (first==null || run.head.compareTo(first)<0))
+			first = run.head;
+		return first!=null && first.compareTo(curl)<0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean delete() {
+		runs.forEach(r -> r.file.delete());
+		runs.clear();
+		buffer.clear();
+		discarded.clear();
+		releasable.clear();
+		size = runCount = 0;
+		return SegmentedStorage.deleteFiles(storage, "\\.run[0-9]+(\\.[0-9]+)?");
+	}
+
+	/**
+	 * Returns the position of every run and the buffered elements,
+	 * without writing the buffer as a new run.
+	 */
+	@Override
+	public Object checkpoint() throws IOException {
+		for (Run run : discarded) run.file.checkpoint();
+		releasable.addAll(discarded);
+		discarded.clear();
+		int n = runs.size(), i = 0;
+		int[] numbers = new int[n];
+		SegmentedStorage.Checkpoint[] files = new SegmentedStorage.Checkpoint[n];
+		String[][] heads = new String[n][];
+		for (Run run : runs) {
+			numbers[i] = run.number;
+			files[i] = (SegmentedStorage.Checkpoint) run.file.checkpoint();
+			heads[i] = FifoQueueStorage.toRecord(run.head);
+			i++;
+		}
+		String[][] buffered = new String[buffer.size()][];
+		i = 0;
+		for (CrawlURL curl : buffer)
+			buffered[i++] = FifoQueueStorage.toRecord(curl);
+		return new Checkpoint(runCount, size, numbers, files, heads, buffered);
+	}
+
+	@Override
+	public void release() {
+		runs.forEach(r -> r.file.release());
+		releasable.forEach(r -> r.file.release());
+		releasable.clear();
+	}
+
+	@Override
+	public void restore(Object state) {
+		Checkpoint checkpoint = (Checkpoint) state;
+		runs.clear();
+		buffer.clear();
+		discarded.clear();
+		releasable.clear();
+		List<Integer> restored = new ArrayList<>();
+		for (int i=0; i<checkpoint.numbers.length; i++) {
+			Run run = newRun(checkpoint.numbers[i]);
+			run.file.restore(checkpoint.files[i]);
+			run.head = FifoQueueStorage.toCrawlURL(checkpoint.heads[i], root);
+			if (run.head!=null) runs.add(run);
+			restored.add(run.number);
+		}
+		for (String[] record : checkpoint.buffer) {
+			CrawlURL curl = FifoQueueStorage.toCrawlURL(record, root);
+			if (curl!=null) buffer.add(curl);
+		}
+		deleteRunsExcept(restored);
+		runCount = checkpoint.runCount;
+		size = checkpoint.size;
+	}
+
+	/**
+	 * Writes the buffer to disk as a new sorted run
+	 */
+	private void flush() throws IOException {
+		Run run = newRun(runCount++);
+		for (CrawlURL curl : buffer)
+			run.file.store(curl);
+		buffer.clear();
+		if (run.advance()) runs.add(run);
+		else discard(run);
+		if (runs.size()>MAX_RUNS)
+			compact();
+	}
+
+	/**
+	 * Merges the {@link #MERGE_FACTOR} smallest runs into a single one
+	 */
+	private void compact() throws IOException {
+		List<Run> smallest = new ArrayList<>(runs);
+		smallest.sort(Comparator.comparingInt(Run::size));
+		PriorityQueue<Run> merging = new PriorityQueue<>(BY_HEAD);
+		for (Run run : smallest.subList(0, Math.min(MERGE_FACTOR, smallest.size()))) {
+			runs.remove(run);
+			merging.add(run);
+		}
+		Run merged = newRun(runCount++);
+		while (!merging.isEmpty()) {
+			Run run = merging.poll();
+			merged.file.store(run.head);
+			if (run.advance()) merging.add(run);
+			else discard(run);
+		}
+		if (merged.advance()) runs.add(merged);
+		else discard(merged);
+	}
+
+	private void discard(Run run) {
+		run.file.discard();
+		discarded.add(run);
+	}
+
+	private Run newRun(int number) {
+		return new Run(number, new FifoQueueStorage(storage+".run"+number, Integer.MAX_VALUE, root));
+	}
+
+	/**
+	 * Deletes the files of any run not in the given list
+	 */
+	private void deleteRunsExcept(List<Integer> numbers) {
+		Path path = Paths.get(storage).toAbsolutePath();
+		Pattern run = Pattern.compile(
+				Pattern.quote(path.getFileName().toString())+"\\.run([0-9]+)(\\.[0-9]+)?");
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(path.getParent())) {
+			for (Path file : files) {
+				Matcher m = run.matcher(file.getFileName().toString());
+				if (m.matches() && !numbers.contains(Integer.parseInt(m.group(1))))
+					Files.deleteIfExists(file);
+			}
+		} catch (IOException e) {
+			// runs written after the checkpoint are overwritten anyway
+		}
+	}
+
+}
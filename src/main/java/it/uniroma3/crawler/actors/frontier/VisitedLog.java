@@ -0,0 +1,109 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.LongConsumer;
+
+/**
+ * An append-only file of the fingerprints added to a {@link VisitedSet},
+ * so that a snapshot of a {@link CrawlQueue} only records how many of them
+ * were logged, instead of the whole set.
+ * <br>
+ * The fingerprints are buffered in memory and written when the buffer is full
+ * and at every {@link #checkpoint()}.
+ */
+class VisitedLog {
+	private static final int BUFFER_SIZE = 4096; // fingerprints written at once
+
+	private final Path path;
+	private final ByteBuffer buffer;
+
+	/**
+	 * Constructs a new VisitedLog in the given file, created on the first write.
+	 * @param path the path of the file
+	 */
+	VisitedLog(String path) {
+		this.path = Paths.get(path);
+		this.buffer = ByteBuffer.allocate(BUFFER_SIZE*Long.BYTES);
+	}
+
+	/**
+	 * Appends a fingerprint to this log.
+	 * @param fingerprint the fingerprint
+	 * @throws IOException if the buffered fingerprints cannot be written
+	 */
+	void append(long fingerprint) throws IOException {
+		if (!buffer.hasRemaining())
+			write();
+		buffer.putLong(fingerprint);
+	}
+
+	/**
+	 * Writes the buffered fingerprints.
+	 * @return the number of fingerprints in the file
+	 * @throws IOException if the file cannot be written
+	 */
+	long checkpoint() throws IOException {
+		write();
+		return Files.exists(path) ? Files.size(path)/Long.BYTES : 0;
+	}
+
+	/**
+	 * Discards the fingerprints logged after the given checkpoint
+	 * and passes the others to the consumer.
+	 * @param count the number of fingerprints returned by {@link #checkpoint()}
+	 * @param consumer the consumer of the logged fingerprints
+	 * @throws IOException if the file cannot be read or is shorter than the checkpoint
+	 */
+	void restore(long count, LongConsumer consumer) throws IOException {
+		buffer.clear();
+		if (count==0) {
+			delete();
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(path, WRITE)) {
+			if (channel.size()>count*Long.BYTES)
+				channel.truncate(count*Long.BYTES);
+		}
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(path)))) {
+			for (long i=0;i<count;i++)
+				consumer.accept(in.readLong());
+		}
+	}
+
+	/**
+	 * Deletes the file of this log, if exists.
+	 * The fingerprints not written yet are kept, and written to a new file.
+	 * @return true if the file was deleted, false otherwise
+	 */
+	boolean delete() {
+		try {
+			return Files.deleteIfExists(path);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private void write() throws IOException {
+		if (buffer.position()==0) return;
+		buffer.flip();
+		try (FileChannel channel = FileChannel.open(path, CREATE, WRITE, APPEND)) {
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		} finally {
+			buffer.compact();
+		}
+	}
+
+}
@@ -0,0 +1,72 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import java.io.IOException;
+
+import it.uniroma3.crawler.model.PageClass;
+import it.uniroma3.crawler.util.FileUtils;
+
+/**
+ * A set of the 64-bit fingerprints of the URLs already visited by a {@link CrawlQueue}.
+ */
+public interface VisitedSet {
+	/** Open-addressed table of fingerprints kept on heap */
+	String MEMORY = "memory";
+	/** Open-addressed table of fingerprints kept in a memory-mapped file */
+	String MAPPED = "mapped";
+
+	/**
+	 * Creates the VisitedSet of the web site with the given root {@link PageClass}.
+	 * <br>
+	 * If the mapped file cannot be created, an in-memory set is returned.
+	 * @param mode either {@link #MEMORY} or {@link #MAPPED}
+	 * @param capacity the expected number of fingerprints
+	 * @param root the root PageClass of a web site
+	 * @return the VisitedSet
+	 */
+	static VisitedSet create(String mode, int capacity, PageClass root) {
+		if (MAPPED.equals(mode)) {
+			try {
+				return new MappedVisitedSet("src/main/resources/storage/visited_"
+						+FileUtils.normalizeURL(root.getDomain())+".bin", capacity);
+			} catch (IOException e) {
+				return new LongVisitedSet(capacity);
+			}
+		}
+		return new LongVisitedSet(capacity);
+	}
+
+	/**
+	 * Adds the given fingerprint to this set.
+	 * @param fingerprint the URL fingerprint
+	 * @return true if the fingerprint was not already present
+	 */
+	boolean add(long fingerprint);
+
+	/**
+	 * Adds a fingerprint known to be absent from this set,
+	 * without comparing it with the ones already present.
+	 * @param fingerprint a URL fingerprint not in this set
+	 */
+	void insert(long fingerprint);
+
+	/**
+	 * Returns true if this set contains the given fingerprint.
+	 * @param fingerprint the URL fingerprint
+	 * @return true if the fingerprint is present
+	 */
+	boolean contains(long fingerprint);
+
+	/**
+	 * Returns the number of fingerprints in this set
+	 * @return the number of fingerprints
+	 */
+	long size();
+
+	/**
+	 * Returns the fingerprints in this set.
+	 * Fingerprints equal to 0 are returned as 1.
+	 * @return the fingerprints, in no particular order
+	 */
+	long[] toArray();
+
+}
@@ -0,0 +1,43 @@
+package it.uniroma3.crawler.messages;
+
+import java.util.List;
+import java.util.Map;
+
+import it.uniroma3.crawler.model.DataType;
+
+/**
+ * Asks for the outgoing links and the data record of a page,
+ * extracted in a single visit of its DOM.
+ */
+public class ExtractMsg {
+	
+	private final String url;
+	private final List<String> navigationXPaths;
+	private final List<String> formXPaths;
+	private final Map<String,DataType> data;
+	
+	public ExtractMsg(String url, List<String> navigationXPaths, List<String> formXPaths, 
+			Map<String,DataType> data) {
+		this.url = url;
+		this.navigationXPaths = navigationXPaths;
+		this.formXPaths = formXPaths;
+		this.data = data;
+	}
+	
+	public List<String> getNavXPaths() {
+		return this.navigationXPaths;
+	}
+	
+	public List<String> getFormXPaths() {
+		return formXPaths;
+	}
+	
+	public Map<String,DataType> getData() {
+		return this.data;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+}
@@ -0,0 +1,46 @@
+package it.uniroma3.crawler.messages;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of an {@link ExtractMsg}. The response is 0 if the page 
+ * has been extracted, {@link ProcessedMsg#EXTRACT_FAILED} otherwise.
+ */
+public class ExtractedMsg {
+	
+	private final int response;
+	private final Map<String, List<String>> outLinks;
+	private final List<String> record;
+	
+	public ExtractedMsg() {
+		this(0);
+	}
+	
+	public ExtractedMsg(int response) {
+		this.response = response;
+		this.outLinks = new HashMap<>();
+		this.record = new ArrayList<>();
+	}
+	
+	public ExtractedMsg(Map<String, List<String>> outLinks, List<String> record) {
+		this.response = 0;
+		this.outLinks = outLinks;
+		this.record = record;
+	}
+	
+	public int getResponse() {
+		return this.response;
+	}
+	
+	public Map<String, List<String>> getLinks() {
+		return this.outLinks;
+	}
+	
+	public List<String> getRecord() {
+		return record;
+	}
+
+}
@@ -0,0 +1,18 @@
+package it.uniroma3.crawler.messages;
+
+/**
+ * Sent by a fetcher to the frontier when it gives up on a URL, 
+ * so that its lease is dropped instead of expiring and being re-issued.
+ */
+public class FailedURLMsg {
+	private final String url;
+
+	public FailedURLMsg(String url) {
+		this.url = url;
+	}
+	
+	public String getURL() {
+		return url;
+	}
+	
+}
@@ -0,0 +1,25 @@
+package it.uniroma3.crawler.messages;
+
+/**
+ * The time taken by a fetch, and whether the server answered it
+ * without signs of overload (no timeout, connection error, 429 or 5xx status).
+ */
+public class FetchStatsMsg {
+	
+	private final long latency;
+	private final boolean success;
+	
+	public FetchStatsMsg(long latency, boolean success) {
+		this.latency = latency;
+		this.success = success;
+	}
+	
+	public long getLatency() {
+		return this.latency;
+	}
+	
+	public boolean isSuccess() {
+		return this.success;
+	}
+	
+}
@@ -1,18 +1,25 @@
 package it.uniroma3.crawler.messages;
 
+/**
+ * The result of a {@link FetchMsg}, with the HTTP status of the response
+ * (0 if the server did not answer) and the time taken by the fetch.
+ */
 public class FetchedMsg {
 	
 	private final int response;
 	private final String url;
+	private final int status;
+	private final long fetchTime;
 
-	public FetchedMsg(int response) {
-		this.response = response;
-		this.url = null;
+	public FetchedMsg(int response, int status, long fetchTime) {
+		this(null, response, status, fetchTime);
 	}
 	
-	public FetchedMsg(String url, int response) {
+	public FetchedMsg(String url, int response, int status, long fetchTime) {
 		this.response = response;
 		this.url = url;
+		this.status = status;
+		this.fetchTime = fetchTime;
 	}
 	
 	public int getResponse() {
@@ -22,5 +29,13 @@ public class FetchedMsg {
 	public String getUrl() {
 		return url;
 	}
+	
+	public int getStatus() {
+		return status;
+	}
+	
+	public long getFetchTime() {
+		return fetchTime;
+	}
 
 }
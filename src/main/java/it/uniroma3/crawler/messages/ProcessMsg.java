@@ -0,0 +1,41 @@
+package it.uniroma3.crawler.messages;
+
+/**
+ * Asks to fetch, save and extract a page in a single task,
+ * on the node that owns the page.
+ */
+public class ProcessMsg {
+	
+	private final FetchMsg fetch;
+	private final ExtractMsg extract;
+	private final int slot;
+	
+	public ProcessMsg(FetchMsg fetch, ExtractMsg extract) {
+		this(fetch, extract, 0);
+	}
+	
+	/**
+	 * @param fetch the fetch request
+	 * @param extract the extraction request
+	 * @param slot the in-flight slot of the fetcher: requests in 
+	 * different slots are processed concurrently
+	 */
+	public ProcessMsg(FetchMsg fetch, ExtractMsg extract, int slot) {
+		this.fetch = fetch;
+		this.extract = extract;
+		this.slot = slot;
+	}
+	
+	public FetchMsg getFetch() {
+		return fetch;
+	}
+	
+	public ExtractMsg getExtract() {
+		return extract;
+	}
+	
+	public int getSlot() {
+		return slot;
+	}
+
+}
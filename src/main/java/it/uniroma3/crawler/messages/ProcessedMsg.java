@@ -0,0 +1,69 @@
+package it.uniroma3.crawler.messages;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of a {@link ProcessMsg}. The response is 0 if the page 
+ * has been fetched, saved and extracted, {@link #FETCH_FAILED}, {@link #SAVE_FAILED} 
+ * or {@link #EXTRACT_FAILED} otherwise. The HTTP status of the response
+ * (0 if the server did not answer) and the time taken by the fetch alone
+ * are reported as well.
+ */
+public class ProcessedMsg {
+	public static final int FETCH_FAILED = 1;
+	public static final int SAVE_FAILED = 2;
+	public static final int EXTRACT_FAILED = 3;
+	
+	private final int response;
+	private final int status;
+	private final long fetchTime;
+	private final String url;
+	private final Map<String, List<String>> outLinks;
+	private final List<String> record;
+	
+	public ProcessedMsg(int response, int status, long fetchTime) {
+		this(null, response, status, fetchTime, new HashMap<>(), new ArrayList<>());
+	}
+	
+	public ProcessedMsg(String url, int response, int status, long fetchTime,
+			Map<String, List<String>> outLinks, List<String> record) {
+		this.response = response;
+		this.status = status;
+		this.fetchTime = fetchTime;
+		this.url = url;
+		this.outLinks = outLinks;
+		this.record = record;
+	}
+	
+	public int getResponse() {
+		return this.response;
+	}
+	
+	public int getStatus() {
+		return status;
+	}
+	
+	public long getFetchTime() {
+		return fetchTime;
+	}
+
+	/**
+	 * Returns the URL of the page, if changed by the request
+	 * @return the new URL, or null if not changed
+	 */
+	public String getUrl() {
+		return url;
+	}
+	
+	public Map<String, List<String>> getLinks() {
+		return this.outLinks;
+	}
+	
+	public List<String> getRecord() {
+		return record;
+	}
+
+}
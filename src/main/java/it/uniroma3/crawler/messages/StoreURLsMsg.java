@@ -0,0 +1,20 @@
+package it.uniroma3.crawler.messages;
+
+import java.util.List;
+
+public class StoreURLsMsg {
+	private final List<StoreURLMsg> urls;
+	
+	public StoreURLsMsg(List<StoreURLMsg> urls) {
+		this.urls = urls;
+	}
+	
+	public List<StoreURLMsg> getURLs() {
+		return urls;
+	}
+	
+	public boolean isEmpty() {
+		return urls.isEmpty();
+	}
+
+}
@@ -248,6 +248,23 @@ public class PageClass implements Comparable<PageClass> {
 		return fields;
 	}
 	
+	/**
+	 * Returns the value types of the data fields, matching {@link #getDataFieldNames()}: 
+	 * "url" for the URL of the page, then the name of each {@link DataType} 
+	 * ("string", "img", "url"...)
+	 * @return the data field types
+	 */
+	public String[] getDataFieldTypes() {
+		String[] types = new String[dataLinks.size()+1];
+		types[0] = "url";
+		int i = 1;
+		for (DataLink l : dataLinks) {
+			String type = l.getDataType().getClass().getSimpleName().replace("DataType", "");
+			types[i++] = type.toLowerCase();
+		}
+		return types;
+	}
+	
 	public List<String> getNavigationXPaths() {
 		List<String> navList = this.links.stream()
 				.filter(l -> !l.isForm()).map(l -> l.getXPath()).collect(toList());
@@ -88,7 +88,7 @@ public class ModelerService extends AbstractLoggingActor {
 		return version;
 	}
 	
-	private int lastModelVersion(String websiteFile) throws IOException {
+	private static int lastModelVersion(String websiteFile) throws IOException {
 		int version = 0;
 		CsvReader websiteReader = new CsvReader(websiteFile, '\t');
 		websiteReader.readRecord();
@@ -99,65 +99,76 @@ public class ModelerService extends AbstractLoggingActor {
 	}
 	
 	private PageClass loadCSV(SeedConfig conf) {
-		PageClass root = null;
 		try {
-			String file = conf.file;
-			if (file==null) {
-				String normUrl = normalizeURL(conf.site);
-				String websiteFile = CSV_PATH+normUrl+"_website.csv";
-				file = normUrl+"_target_"+lastModelVersion(websiteFile)+".csv";
-			}
-			CsvReader reader = new CsvReader(CSV_PATH+file, '\t');
-			
-			Set<PageClass> classes = getPageClasses(conf, file);
-			while (reader.readRecord()) {
-				PageClass pageSrc = getPageClass(classes, reader.get(0));
-				if (root==null) root = pageSrc;
-				String type = reader.get(1);
-				String xpath = reader.get(2);
-				PageClass pageDest = getPageClass(classes, reader.get(3));
-				if (type.equals("link")) {
-					if (pageDest!=null) {
-						String subtype = reader.get(4);
-						if (!subtype.isEmpty()) {
-							switch(subtype) {
-								case "menu":
-									pageSrc.loadMenuLink(xpath, reader.get(5), reader.get(6), pageDest);
-									break;
-								case "list":
-									pageSrc.addListLink(xpath, pageDest);
-									break;
-								case "form":
-									pageSrc.addFormLink(xpath, pageDest);
-									break;
-								default:
-									pageSrc.addSingletonLink(xpath, subtype, pageDest);
-									break;
-							}
+			return loadModel(conf);
+		} catch (IOException e) {
+			log().error("IOException while loading CSV Model: "+e.getMessage());
+			return new PageClass();
+		}
+	}
+	
+	/**
+	 * Loads the CSV model of the website of the given configuration: 
+	 * the static file if specified, the latest generated model otherwise.
+	 * @param conf the website configuration
+	 * @return the root PageClass of the model
+	 * @throws IOException if the model cannot be read
+	 */
+	public static PageClass loadModel(SeedConfig conf) throws IOException {
+		PageClass root = null;
+		String file = conf.file;
+		if (file==null) {
+			String normUrl = normalizeURL(conf.site);
+			String websiteFile = CSV_PATH+normUrl+"_website.csv";
+			file = normUrl+"_target_"+lastModelVersion(websiteFile)+".csv";
+		}
+		CsvReader reader = new CsvReader(CSV_PATH+file, '\t');
+		
+		Set<PageClass> classes = getPageClasses(conf, file);
+		while (reader.readRecord()) {
+			PageClass pageSrc = getPageClass(classes, reader.get(0));
+			if (root==null) root = pageSrc;
+			String type = reader.get(1);
+			String xpath = reader.get(2);
+			PageClass pageDest = getPageClass(classes, reader.get(3));
+			if (type.equals("link")) {
+				if (pageDest!=null) {
+					String subtype = reader.get(4);
+					if (!subtype.isEmpty()) {
+						switch(subtype) {
+							case "menu":
+								pageSrc.loadMenuLink(xpath, reader.get(5), reader.get(6), pageDest);
+								break;
+							case "list":
+								pageSrc.addListLink(xpath, pageDest);
+								break;
+							case "form":
+								pageSrc.addFormLink(xpath, pageDest);
+								break;
+							default:
+								pageSrc.addSingletonLink(xpath, subtype, pageDest);
+								break;
 						}
-						else pageSrc.addPageClassLink(xpath, pageDest);
 					}
-				}
-				else if (type.equals("form")) {
-					pageSrc.setForm(xpath);
-				}
-				else {
-					String fieldName = reader.get(3);
-					if (fieldName.isEmpty())
-						pageSrc.addData(xpath, type);
-					else pageSrc.addData(xpath, type, fieldName);
+					else pageSrc.addPageClassLink(xpath, pageDest);
 				}
 			}
-			reader.close();
-		} catch (IOException e) {
-			log().error("IOException while loading CSV Model: "+e.getMessage());
-			return new PageClass();
+			else if (type.equals("form")) {
+				pageSrc.setForm(xpath);
+			}
+			else {
+				String fieldName = reader.get(3);
+				if (fieldName.isEmpty())
+					pageSrc.addData(xpath, type);
+				else pageSrc.addData(xpath, type, fieldName);
+			}
 		}
+		reader.close();
 		root.setHierarchy();
 		return root;
 	}
 
-	private Set<PageClass> getPageClasses(SeedConfig conf, String file) 
+	private static Set<PageClass> getPageClasses(SeedConfig conf, String file) 
 			throws IOException {
 		HashSet<PageClass> pageClasses = new HashSet<>();
 		CsvReader reader = new CsvReader(CSV_PATH+file, '\t');
@@ -171,7 +182,7 @@ public class ModelerService extends AbstractLoggingActor {
 		return pageClasses;
 	}
 	
-	private PageClass getPageClass(Set<PageClass> pClasses, String name) {
+	private static PageClass getPageClass(Set<PageClass> pClasses, String name) {
 		return pClasses.stream().filter(pc -> pc.getName().equals(name)).findAny().orElse(null);
 	}
 
@@ -7,6 +7,7 @@ import static java.util.stream.Collectors.toList;
 import java.util.List;
 
 import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import com.typesafe.config.ConfigObject;
 
 public class CrawlerSettings implements Extension {
@@ -14,6 +15,30 @@ public class CrawlerSettings implements Extension {
 	public final int fetchers;
 	public final int pages;
 	public final int frontierheap;
+	public final String frontierspill;
+	public final int spillsegment;
+	public final String visitedset;
+	public final int visitedcapacity;
+	public final double bloomfpp;
+	public final int bloommemory;
+	public final String fingerprint;
+	public final int snapshot;
+	public final long lease;
+	public final String ratecontrol;
+	public final int minwait;
+	public final int maxwait;
+	public final int targetlatency;
+	public final String pipeline;
+	public final int inflight;
+	public final int pageworkers;
+	public final String nodeassignment;
+	public final int virtualnodes;
+	public final int writerflush;
+	public final int writerbuffer;
+	public final String recordformat;
+	public final int rowgroup;
+	public final int indexbatch;
+	public final int indexflush;
 	
 	public static class SeedConfig {
 		public String site;
@@ -55,11 +80,63 @@ public class CrawlerSettings implements Extension {
 	}
 
 	public CrawlerSettings(Config config) {
-		ConfigObject sites = config.getObject("crawler.modeler");
+		ConfigObject sites = (config.hasPath("crawler.modeler")) ? 
+				config.getObject("crawler.modeler") : ConfigFactory.empty().root();
 		seeds = sites.keySet().stream().map(s -> conf(s,config)).collect(toList());
-		fetchers = config.getInt("crawler.crawling.fetchers");
-		pages = config.getInt("crawler.crawling.pages");
-		frontierheap = config.getInt("crawler.crawling.frontierheap");
+		fetchers = (config.hasPath("crawler.crawling.fetchers")) ? 
+				config.getInt("crawler.crawling.fetchers") : 1;
+		pages = (config.hasPath("crawler.crawling.pages")) ? 
+				config.getInt("crawler.crawling.pages") : 1000000;
+		frontierheap = (config.hasPath("crawler.crawling.frontierheap")) ? 
+				config.getInt("crawler.crawling.frontierheap") : 10000;
+		frontierspill = (config.hasPath("crawler.crawling.frontierspill")) ? 
+				config.getString("crawler.crawling.frontierspill") : "segments";
+		spillsegment = (config.hasPath("crawler.crawling.spillsegment")) ? 
+				config.getInt("crawler.crawling.spillsegment") : 100000;
+		visitedset = (config.hasPath("crawler.crawling.visitedset")) ? 
+				config.getString("crawler.crawling.visitedset") : "memory";
+		visitedcapacity = (config.hasPath("crawler.crawling.visitedcapacity")) ? 
+				config.getInt("crawler.crawling.visitedcapacity") : 1000000;
+		bloomfpp = (config.hasPath("crawler.crawling.bloomfpp")) ? 
+				config.getDouble("crawler.crawling.bloomfpp") : 0;
+		bloommemory = (config.hasPath("crawler.crawling.bloommemory")) ? 
+				config.getInt("crawler.crawling.bloommemory") : 16;
+		fingerprint = (config.hasPath("crawler.crawling.fingerprint")) ? 
+				config.getString("crawler.crawling.fingerprint") : "sha1";
+		snapshot = (config.hasPath("crawler.crawling.snapshot")) ? 
+				config.getInt("crawler.crawling.snapshot") : 10000;
+		lease = (config.hasPath("crawler.crawling.lease")) ? 
+				config.getLong("crawler.crawling.lease") : 300000;
+		ratecontrol = (config.hasPath("crawler.crawling.ratecontrol")) ? 
+				config.getString("crawler.crawling.ratecontrol") : "static";
+		minwait = (config.hasPath("crawler.crawling.minwait")) ? 
+				config.getInt("crawler.crawling.minwait") : 250;
+		maxwait = (config.hasPath("crawler.crawling.maxwait")) ? 
+				config.getInt("crawler.crawling.maxwait") : 30000;
+		targetlatency = (config.hasPath("crawler.crawling.targetlatency")) ? 
+				config.getInt("crawler.crawling.targetlatency") : 2000;
+		pipeline = (config.hasPath("crawler.crawling.pipeline")) ? 
+				config.getString("crawler.crawling.pipeline") : "actors";
+		inflight = (config.hasPath("crawler.crawling.inflight")) ? 
+				config.getInt("crawler.crawling.inflight") : 1;
+		pageworkers = (config.hasPath("crawler.crawling.pageworkers")) ? 
+				config.getInt("crawler.crawling.pageworkers") : 8;
+		nodeassignment = (config.hasPath("crawler.crawling.nodeassignment")) ? 
+				config.getString("crawler.crawling.nodeassignment") : "hash";
+		virtualnodes = (config.hasPath("crawler.crawling.virtualnodes")) ? 
+				config.getInt("crawler.crawling.virtualnodes") : 100;
+		writerflush = (config.hasPath("crawler.crawling.writerflush")) ? 
+				config.getInt("crawler.crawling.writerflush") : 1000;
+		writerbuffer = (config.hasPath("crawler.crawling.writerbuffer")) ? 
+				config.getInt("crawler.crawling.writerbuffer") : 64;
+		recordformat = (config.hasPath("crawler.crawling.recordformat")) ? 
+				config.getString("crawler.crawling.recordformat") : "tsv";
+		rowgroup = (config.hasPath("crawler.crawling.rowgroup")) ? 
+				config.getInt("crawler.crawling.rowgroup") : 10000;
+		indexbatch = (config.hasPath("crawler.crawling.indexbatch")) ? 
+				config.getInt("crawler.crawling.indexbatch") : 100;
+		indexflush = (config.hasPath("crawler.crawling.indexflush")) ? 
+				config.getInt("crawler.crawling.indexflush") : 1000;
 	}
 	
 	private SeedConfig conf(String site, Config conf) {
@@ -7,9 +7,11 @@ import akka.actor.Extension;
 
 public class NodesSettings implements Extension {
 	public final String[] nodes;
+	public final int[] weights;
 	
 	public NodesSettings(Config config) {
 		nodes = addresses(config.getObject("nodes"));
+		weights = weights(config.getObject("nodes"));
 	}
 	
 	private String[] addresses(ConfigObject nodes) {
@@ -20,9 +22,21 @@ public class NodesSettings implements Extension {
 			String host = node.getString("host");
 			int port = node.getInt("port");
 			String system = node.getString("system");
-			addr[i] = "akka://"+system+"@"+host+":"+port;
+			String protocol = (node.hasPath("protocol")) ? node.getString("protocol") : "akka";
+			addr[i] = protocol+"://"+system+"@"+host+":"+port;
 			i++;
 		}
 		return addr;
 	}
+	
+	private int[] weights(ConfigObject nodes) {
+		int[] weights = new int[nodes.keySet().size()];
+		int i=0;
+		for (String k : nodes.keySet()) {
+			Config node = nodes.toConfig().getConfig(k);
+			weights[i] = (node.hasPath("weight")) ? node.getInt("weight") : 1;
+			i++;
+		}
+		return weights;
+	}
 }
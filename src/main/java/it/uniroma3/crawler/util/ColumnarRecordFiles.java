@@ -0,0 +1,334 @@
+package it.uniroma3.crawler.util;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.size;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+
+import it.uniroma3.crawler.model.PageClass;
+
+/**
+ * The files of the data records extracted from the crawled pages, one
+ * compressed columnar file for each {@link PageClass}.
+ * <br>
+ * A file starts with its schema, the name and the type of each column
+ * (see {@link PageClass#getDataFieldNames()} and {@link PageClass#getDataFieldTypes()}),
+ * followed by row groups. The rows of a file are buffered in memory and written
+ * as a row group whenever <code>rowGroup</code> rows are buffered, and when the
+ * files are closed: each column of a row group is a separately deflated chunk,
+ * so that a reader can decode only the columns it needs (see {@link ColumnarRecordReader}).
+ * <br>
+ * The encoding of a chunk depends on the type and the values of its column: 
+ * a column with few distinct values is dictionary-encoded, a column of integers 
+ * is written as the deltas of their values, and a <i>url</i> column shares with 
+ * each value the prefix of the previous one. The data types of a PageClass 
+ * do not tell numbers from strings, so integer columns are detected from their values.
+ * <pre>
+ * file      := "SCOL" version:int columns:int (name:UTF type:UTF)* group*
+ * group     := rows:int columns:int (encoding:byte rawLength:int length:int)* chunk*
+ * chunk     := deflate(PLAIN: (len:varint utf8)*
+ *                    | DICTIONARY: size:varint (len:varint utf8)* index:varint*
+ *                    | INTEGER: delta:zigzag-varlong*
+ *                    | PREFIX: (shared:varint len:varint utf8)*)
+ * </pre>
+ * A record with a single multi-valued field (values separated by tabs) is
+ * written as one row for each value, as in the tab-separated files.
+ * This class is thread-safe.
+ */
+public class ColumnarRecordFiles implements RecordSink {
+	public static final String EXTENSION = ".col";
+	static final byte[] MAGIC = "SCOL".getBytes(StandardCharsets.US_ASCII);
+	static final int VERSION = 2; // version 1 files have PLAIN and DICTIONARY chunks only
+	static final byte PLAIN = 0;
+	static final byte DICTIONARY = 1;
+	static final byte INTEGER = 2;
+	static final byte PREFIX = 3;
+	static final String URL_TYPE = "url";
+
+	private final Function<String, String> directories;
+	private final int rowGroup;
+	private final Map<String, ColumnFile> files;
+	private final Set<String> dirty;
+	private final Deflater deflater;
+
+	/**
+	 * Constructs a new ColumnarRecordFiles.
+	 * @param directories the output directory of the records of each website
+	 * @param rowGroup the number of rows of each row group
+	 */
+	public ColumnarRecordFiles(Function<String, String> directories, int rowGroup) {
+		this.directories = directories;
+		this.rowGroup = Math.max(1, rowGroup);
+		this.files = new HashMap<>();
+		this.dirty = new HashSet<>();
+		this.deflater = new Deflater(Deflater.BEST_SPEED);
+	}
+
+	@Override
+	public synchronized void write(PageClass src, String url, String[] record) throws IOException {
+		String output = directories.apply(src.getDomain());
+		String file = output+"/"+src.getName()+EXTENSION;
+		ColumnFile out = getFile(output, file, src);
+		if (record.length==1 && record[0].contains("\t")) {
+			for (String r : record[0].split("\t"))
+				out.add(url, new String[] {r});
+		}
+		else out.add(url, record);
+		if (out.rows>=rowGroup) {
+			out.writeGroup();
+			dirty.add(file);
+		}
+	}
+
+	/**
+	 * Writes to disk the row groups completed since the last flush.
+	 * The rows of an incomplete row group are kept in memory, so that
+	 * frequent flushes do not write small row groups.
+	 */
+	@Override
+	public synchronized void flush() throws IOException {
+		IOException failure = null;
+		for (String file : dirty) {
+			try {
+				files.get(file).out.flush();
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		dirty.clear();
+		if (failure!=null) throw failure;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		IOException failure = null;
+		for (ColumnFile file : files.values()) {
+			try {
+				if (file.rows>0) file.writeGroup();
+			} catch (IOException e) {
+				failure = e;
+			}
+			try {
+				file.out.close();
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		files.clear();
+		dirty.clear();
+		if (failure!=null) throw failure;
+	}
+
+	/* Returns the open file of the records of the given PageClass,
+	 * opening it (and writing the schema) the first time */
+	private ColumnFile getFile(String output, String file, PageClass src) throws IOException {
+		ColumnFile out = files.get(file);
+		if (out!=null) return out;
+
+		Path dir = Paths.get(output);
+		if (!exists(dir))
+			createDirectories(dir);
+		String[] types = src.getDataFieldTypes();
+		String[] names = src.getDataFieldNames();
+		if (names.length!=types.length) { // no header
+			names = new String[types.length];
+			names[0] = "URL";
+			for (int i=1;i<names.length;i++)
+				names[i] = "field"+i;
+		}
+		Path path = Paths.get(file);
+		boolean header = !exists(path) || size(path)==0;
+		if (!header) {
+			ColumnarRecordReader existing = new ColumnarRecordReader(path);
+			if (!Arrays.equals(existing.getNames(), names)
+					|| !Arrays.equals(existing.getTypes(), types))
+				throw new IOException("schema of "+file+" does not match "+src.getName());
+		}
+		out = new ColumnFile(new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file, true))), types);
+		files.put(file, out);
+		if (header) { // save file schema
+			out.out.write(MAGIC);
+			out.out.writeInt(VERSION);
+			out.out.writeInt(names.length);
+			for (int i=0;i<names.length;i++) {
+				out.out.writeUTF(names[i]);
+				out.out.writeUTF(types[i]);
+			}
+			dirty.add(file);
+		}
+		return out;
+	}
+
+	/* The open stream and the buffered rows of a file */
+	private class ColumnFile {
+		private final DataOutputStream out;
+		private final String[] types;
+		private final List<List<String>> columns;
+		private int rows;
+
+		private ColumnFile(DataOutputStream out, String[] types) {
+			this.out = out;
+			this.types = types;
+			this.columns = new ArrayList<>(types.length);
+			for (int i=0;i<types.length;i++)
+				this.columns.add(new ArrayList<>());
+		}
+
+		private void add(String url, String[] record) throws IOException {
+			if (record.length>=columns.size())
+				throw new IOException("record of "+record.length+" fields, expected "
+						+(columns.size()-1));
+			columns.get(0).add(url);
+			for (int i=1;i<columns.size();i++) {
+				String value = (i-1<record.length) ? record[i-1] : null;
+				columns.get(i).add((value!=null) ? value : "");
+			}
+			rows++;
+		}
+
+		private void writeGroup() throws IOException {
+			int n = columns.size();
+			byte[] encodings = new byte[n];
+			int[] rawLengths = new int[n];
+			byte[][] chunks = new byte[n][];
+			for (int i=0;i<n;i++) {
+				ByteArrayOutputStream raw = new ByteArrayOutputStream();
+				encodings[i] = encode(columns.get(i), types[i], raw);
+				rawLengths[i] = raw.size();
+				chunks[i] = deflate(raw.toByteArray());
+			}
+			out.writeInt(rows);
+			out.writeInt(n);
+			for (int i=0;i<n;i++) {
+				out.writeByte(encodings[i]);
+				out.writeInt(rawLengths[i]);
+				out.writeInt(chunks[i].length);
+			}
+			for (byte[] chunk : chunks)
+				out.write(chunk);
+			for (List<String> column : columns)
+				column.clear();
+			rows = 0;
+		}
+	}
+
+	/* Encodes the values of a column of the given type, with a dictionary if at most
+	 * half of them are distinct, and returns the encoding used */
+	static byte encode(List<String> values, String type, ByteArrayOutputStream raw) {
+		Map<String, Integer> dictionary = new LinkedHashMap<>();
+		int limit = values.size()/2;
+		for (String value : values) {
+			if (!dictionary.containsKey(value)) {
+				if (dictionary.size()>=limit) {
+					dictionary = null;
+					break;
+				}
+				dictionary.put(value, dictionary.size());
+			}
+		}
+		if (dictionary==null) {
+			long[] integers = integers(values);
+			if (integers!=null) {
+				long previous = 0;
+				for (long value : integers) {
+					long delta = value-previous;
+					writeVarlong(raw, (delta << 1) ^ (delta >> 63));
+					previous = value;
+				}
+				return INTEGER;
+			}
+			if (URL_TYPE.equals(type)) {
+				byte[] previous = new byte[0];
+				for (String value : values) {
+					byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+					int shared = 0, max = Math.min(bytes.length, previous.length);
+					while (shared<max && bytes[shared]==previous[shared]) shared++;
+					writeVarint(raw, shared);
+					writeVarint(raw, bytes.length-shared);
+					raw.write(bytes, shared, bytes.length-shared);
+					previous = bytes;
+				}
+				return PREFIX;
+			}
+			for (String value : values)
+				writeString(raw, value);
+			return PLAIN;
+		}
+		writeVarint(raw, dictionary.size());
+		for (String value : dictionary.keySet())
+			writeString(raw, value);
+		for (String value : values)
+			writeVarint(raw, dictionary.get(value));
+		return DICTIONARY;
+	}
+
+	private byte[] deflate(byte[] raw) {
+		deflater.reset();
+		deflater.setInput(raw);
+		deflater.finish();
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length/2+64);
+		byte[] buffer = new byte[8192];
+		while (!deflater.finished()) {
+			int len = deflater.deflate(buffer);
+			compressed.write(buffer, 0, len);
+		}
+		return compressed.toByteArray();
+	}
+
+	private static void writeString(ByteArrayOutputStream raw, String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarint(raw, bytes.length);
+		raw.write(bytes, 0, bytes.length);
+	}
+
+	private static void writeVarint(ByteArrayOutputStream raw, int value) {
+		writeVarlong(raw, value & 0xFFFFFFFFL);
+	}
+
+	private static void writeVarlong(ByteArrayOutputStream raw, long value) {
+		while ((value & ~0x7FL)!=0) {
+			raw.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		raw.write((int) value);
+	}
+
+	/* Returns the values as integers if each of them is the canonical text
+	 * of a long, so that they are read back unchanged; null otherwise */
+	private static long[] integers(List<String> values) {
+		long[] integers = new long[values.size()];
+		int i = 0;
+		for (String value : values) {
+			if (value.isEmpty() || value.length()>20) return null;
+			char first = value.charAt(0);
+			if (first!='-' && (first<'0' || first>'9')) return null;
+			try {
+				integers[i] = Long.parseLong(value);
+			} catch (NumberFormatException e) {
+				return null;
+			}
+			if (!Long.toString(integers[i++]).equals(value)) return null;
+		}
+		return integers;
+	}
+
+}
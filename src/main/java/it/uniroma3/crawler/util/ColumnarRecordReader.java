@@ -0,0 +1,225 @@
+package it.uniroma3.crawler.util;
+
+import static it.uniroma3.crawler.util.ColumnarRecordFiles.DICTIONARY;
+import static it.uniroma3.crawler.util.ColumnarRecordFiles.INTEGER;
+import static it.uniroma3.crawler.util.ColumnarRecordFiles.MAGIC;
+import static it.uniroma3.crawler.util.ColumnarRecordFiles.PREFIX;
+import static it.uniroma3.crawler.util.ColumnarRecordFiles.VERSION;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the records of a columnar file written by {@link ColumnarRecordFiles}.
+ * <br>
+ * Only the chunks of the requested columns are read and decompressed,
+ * the others are skipped. Values are returned as strings whatever their encoding.
+ * Files of every earlier version of the format can be read as well. An incomplete row group at the end of the file
+ * (left by a crawl that was interrupted while writing it) is ignored.
+ */
+public class ColumnarRecordReader {
+	private final Path file;
+	private final String[] names;
+	private final String[] types;
+	private final long dataOffset;
+
+	/**
+	 * Opens a columnar file and reads its schema.
+	 * @param file the columnar file
+	 * @throws IOException if the file cannot be read or is not a columnar file
+	 */
+	public ColumnarRecordReader(Path file) throws IOException {
+		this.file = file;
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(file)))) {
+			byte[] magic = new byte[MAGIC.length];
+			in.readFully(magic);
+			if (!Arrays.equals(magic, MAGIC))
+				throw new IOException(file+" is not a columnar record file");
+			int version = in.readInt();
+			if (version<1 || version>VERSION)
+				throw new IOException("unsupported version "+version+" of "+file);
+			int columns = in.readInt();
+			this.names = new String[columns];
+			this.types = new String[columns];
+			long offset = MAGIC.length+8;
+			for (int i=0;i<columns;i++) {
+				names[i] = in.readUTF();
+				types[i] = in.readUTF();
+				offset += 4+utfLength(names[i])+utfLength(types[i]);
+			}
+			this.dataOffset = offset;
+		}
+	}
+
+	/**
+	 * @return the names of the columns
+	 */
+	public String[] getNames() {
+		return names.clone();
+	}
+
+	/**
+	 * @return the types of the columns (see {@link it.uniroma3.crawler.model.PageClass#getDataFieldTypes()})
+	 */
+	public String[] getTypes() {
+		return types.clone();
+	}
+
+	/**
+	 * Reads every row, passing to the consumer the values of the given columns.
+	 * @param columns the names of the columns to be read
+	 * @param consumer the consumer of the values of each row,
+	 * in the order of the given columns
+	 * @throws IOException if the file cannot be read
+	 * @throws IllegalArgumentException if a column does not exist
+	 */
+	public void forEach(String[] columns, Consumer<String[]> consumer) throws IOException {
+		int[] indexes = new int[columns.length];
+		for (int i=0;i<columns.length;i++) {
+			indexes[i] = Arrays.asList(names).indexOf(columns[i]);
+			if (indexes[i]<0)
+				throw new IllegalArgumentException("no column "+columns[i]+" in "+file);
+		}
+
+		Inflater inflater = new Inflater();
+		try (RandomAccessFile in = new RandomAccessFile(file.toFile(), "r")) {
+			long length = in.length();
+			long position = dataOffset;
+			while (position+8<=length) {
+				in.seek(position);
+				int rows = in.readInt();
+				int n = in.readInt();
+				long chunkOffset = position+8+n*9L;
+				if (chunkOffset>length) break;
+				ByteBuffer header = ByteBuffer.wrap(new byte[n*9]);
+				in.readFully(header.array());
+				byte[] encodings = new byte[n];
+				int[] rawLengths = new int[n];
+				long[] offsets = new long[n+1];
+				offsets[0] = chunkOffset;
+				for (int i=0;i<n;i++) {
+					encodings[i] = header.get();
+					rawLengths[i] = header.getInt();
+					offsets[i+1] = offsets[i]+header.getInt();
+				}
+				if (offsets[n]>length) break;
+
+				String[][] values = new String[columns.length][];
+				for (int i=0;i<columns.length;i++) {
+					int c = indexes[i];
+					byte[] chunk = new byte[(int) (offsets[c+1]-offsets[c])];
+					in.seek(offsets[c]);
+					in.readFully(chunk);
+					values[i] = decode(encodings[c], inflate(inflater, chunk, rawLengths[c]), rows);
+				}
+				for (int r=0;r<rows;r++) {
+					String[] row = new String[columns.length];
+					for (int i=0;i<columns.length;i++)
+						row[i] = values[i][r];
+					consumer.accept(row);
+				}
+				position = offsets[n];
+			}
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private byte[] inflate(Inflater inflater, byte[] chunk, int rawLength) throws IOException {
+		inflater.reset();
+		inflater.setInput(chunk);
+		byte[] raw = new byte[rawLength];
+		try {
+			int len = 0;
+			while (len<rawLength && !inflater.finished()) {
+				int n = inflater.inflate(raw, len, rawLength-len);
+				if (n==0 && inflater.needsInput()) break;
+				len += n;
+			}
+			if (len!=rawLength)
+				throw new IOException("truncated column chunk in "+file);
+		} catch (DataFormatException e) {
+			throw new IOException("corrupted column chunk in "+file, e);
+		}
+		return raw;
+	}
+
+	static String[] decode(byte encoding, byte[] raw, int rows) {
+		ByteBuffer in = ByteBuffer.wrap(raw);
+		String[] values = new String[rows];
+		if (encoding==DICTIONARY) {
+			String[] dictionary = new String[readVarint(in)];
+			for (int i=0;i<dictionary.length;i++)
+				dictionary[i] = readString(in);
+			for (int r=0;r<rows;r++)
+				values[r] = dictionary[readVarint(in)];
+		}
+		else if (encoding==INTEGER) {
+			long value = 0;
+			for (int r=0;r<rows;r++) {
+				long zigzag = readVarlong(in);
+				value += (zigzag >>> 1) ^ -(zigzag & 1);
+				values[r] = Long.toString(value);
+			}
+		}
+		else if (encoding==PREFIX) {
+			byte[] previous = new byte[0];
+			for (int r=0;r<rows;r++) {
+				int shared = readVarint(in);
+				byte[] bytes = Arrays.copyOf(previous, shared+readVarint(in));
+				in.get(bytes, shared, bytes.length-shared);
+				values[r] = new String(bytes, StandardCharsets.UTF_8);
+				previous = bytes;
+			}
+		}
+		else {
+			for (int r=0;r<rows;r++)
+				values[r] = readString(in);
+		}
+		return values;
+	}
+
+	private static String readString(ByteBuffer in) {
+		int len = readVarint(in);
+		String value = new String(in.array(), in.position(), len, StandardCharsets.UTF_8);
+		in.position(in.position()+len);
+		return value;
+	}
+
+	private static int readVarint(ByteBuffer in) {
+		return (int) readVarlong(in);
+	}
+
+	private static long readVarlong(ByteBuffer in) {
+		long value = 0;
+		for (int shift=0;;shift+=7) {
+			byte b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80)==0) return value;
+		}
+	}
+
+	/* length in bytes of a string written by DataOutput.writeUTF, without its 2-byte prefix */
+	private static int utfLength(String s) {
+		int len = 0;
+		for (int i=0;i<s.length();i++) {
+			char c = s.charAt(i);
+			if (c>=0x0001 && c<=0x007F) len++;
+			else if (c>0x07FF) len += 3;
+			else len += 2;
+		}
+		return len;
+	}
+
+}
@@ -10,6 +10,9 @@ public class Commands {
 	public static final short SAVE = 9;
 	public static final short SAVED = 10;
 	public static final short ERROR = 11;
+	public static final short EXPIRE = 12;
+	public static final short DISPATCH = 13;
+	public static final short FLUSH = 14;
 	
 	public static final String REPOSITORY = "/user/controller/repository";
 }
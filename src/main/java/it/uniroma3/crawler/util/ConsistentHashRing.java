@@ -0,0 +1,97 @@
+package it.uniroma3.crawler.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A consistent hash ring assigning keys to nodes.
+ * <br>
+ * Each node is placed on the ring as a number of virtual nodes proportional to
+ * its weight, and a key belongs to the first virtual node following the hash 
+ * of the key. Keys therefore spread over the nodes according to their weights,
+ * and adding or removing a node only moves the keys of that node.
+ * <br>
+ * Positions are 64-bit murmur3 hashes (see {@link FingerprintUtils#murmur3(CharSequence)}) 
+ * of the node names and of the keys. This class is not thread-safe.
+ * @param <T> the type of the nodes
+ */
+public class ConsistentHashRing<T> {
+	private final int virtualNodes;
+	private final TreeMap<Long, T> ring;
+	private final Map<T, Integer> weights;
+
+	/**
+	 * Constructs a new empty ring.
+	 * @param virtualNodes the number of virtual nodes of a node of weight 1
+	 */
+	public ConsistentHashRing(int virtualNodes) {
+		this.virtualNodes = Math.max(1, virtualNodes);
+		this.ring = new TreeMap<>();
+		this.weights = new LinkedHashMap<>();
+	}
+
+	/**
+	 * Adds a node of weight 1 to the ring.
+	 * @param node the node
+	 */
+	public void add(T node) {
+		add(node, 1);
+	}
+
+	/**
+	 * Adds a node to the ring, or changes its weight.
+	 * @param node the node, identified on the ring by its String value
+	 * @param weight the weight of the node, 0 to remove it
+	 */
+	public void add(T node, int weight) {
+		remove(node);
+		if (weight<=0) return;
+		weights.put(node, weight);
+		for (int i=0;i<virtualNodes*weight;i++) {
+			// a position already taken is kept by its first node
+			ring.putIfAbsent(FingerprintUtils.murmur3(node+"#"+i), node);
+		}
+	}
+
+	/**
+	 * Removes a node from the ring.
+	 * @param node the node
+	 */
+	public void remove(T node) {
+		if (weights.remove(node)!=null)
+			ring.values().removeIf(node::equals);
+	}
+
+	/**
+	 * Returns the node the given key belongs to.
+	 * @param key the key
+	 * @return the node, or null if the ring is empty
+	 */
+	public T nodeFor(CharSequence key) {
+		if (ring.isEmpty()) return null;
+		SortedMap<Long, T> tail = ring.tailMap(FingerprintUtils.murmur3(key));
+		return (tail.isEmpty()) ? ring.firstEntry().getValue() : tail.get(tail.firstKey());
+	}
+
+	/**
+	 * Returns the nodes of the ring
+	 * @return the nodes, in the order they were added
+	 */
+	public List<T> getNodes() {
+		return Collections.unmodifiableList(new ArrayList<>(weights.keySet()));
+	}
+
+	public int getWeight(T node) {
+		return weights.getOrDefault(node, 0);
+	}
+
+	public boolean isEmpty() {
+		return ring.isEmpty();
+	}
+
+}
@@ -0,0 +1,97 @@
+package it.uniroma3.crawler.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import akka.actor.Extension;
+
+/**
+ * Counters of the crawl, one per node (see {@link Metrics}): 
+ * the number of events and the latency of each hop a page goes through,
+ * such as the fetch, save and extract requests.
+ * <br>
+ * This class is thread-safe, and recording is cheap enough to be always on.
+ */
+public class CrawlMetrics implements Extension {
+	public static final String FETCH = "fetch";
+	public static final String SAVE = "save";
+	public static final String EXTRACT = "extract";
+	public static final String PROCESS = "process";
+	/* pages completed, as counted by the frontier */
+	public static final String PAGE = "page";
+	
+	private final Map<String, Hop> hops = new ConcurrentHashMap<>();
+
+	/**
+	 * The counters of a single hop
+	 */
+	public static class Hop {
+		private final LongAdder count = new LongAdder();
+		private final LongAdder total = new LongAdder();
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		/**
+		 * Returns the mean latency of the hop
+		 * @return the mean latency in milliseconds, 0 if never recorded
+		 */
+		public double getMean() {
+			long n = count.sum();
+			return (n>0) ? (double) total.sum()/n : 0;
+		}
+
+		public long getMax() {
+			return max.get();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d in %.1f ms (max %d ms)", getCount(), getMean(), getMax());
+		}
+	}
+
+	/**
+	 * Records an event of the given hop.
+	 * @param hop the hop name
+	 * @param latency the latency of the event in milliseconds
+	 */
+	public void record(String hop, long latency) {
+		Hop h = hops.computeIfAbsent(hop, k -> new Hop());
+		h.count.increment();
+		h.total.add(latency);
+		h.max.accumulate(latency);
+	}
+
+	/**
+	 * Returns the counters of the given hop
+	 * @param hop the hop name
+	 * @return the counters, empty if never recorded
+	 */
+	public Hop get(String hop) {
+		return hops.computeIfAbsent(hop, k -> new Hop());
+	}
+
+	/**
+	 * Returns the counters of all the recorded hops
+	 * @return the counters by hop name
+	 */
+	public Map<String, Hop> getHops() {
+		return new TreeMap<>(hops);
+	}
+
+	public void reset() {
+		hops.clear();
+	}
+
+	@Override
+	public String toString() {
+		return getHops().toString();
+	}
+
+}
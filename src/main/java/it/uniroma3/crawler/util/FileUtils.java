@@ -58,6 +58,39 @@ public class FileUtils {
     	return "html/"+normalizeURL(website)+"_mirror";
     }
     
+    /**
+     * Returns the path to the store directory assigned to this website.<br>
+     * The Store directory contains the segment files of the crawled 
+     * html pages (see {@link SegmentPageStore}).
+     * @param website the website
+     * @return the directory path
+     */
+    public static String getStoreDirectory(String website) {
+    	return "html/"+normalizeURL(website)+"_store";
+    }
+    
+    /**
+     * Returns the path to the archive directory assigned to this website.<br>
+     * The Archive directory contains the WARC files of the fetched 
+     * responses (see {@link WarcWriter}).
+     * @param website the website
+     * @return the directory path
+     */
+    public static String getArchiveDirectory(String website) {
+    	return "html/"+normalizeURL(website)+"_warc";
+    }
+    
+    /**
+     * Returns the path to the repository file of this website.<br>
+     * The repository file maps each saved URL to its PageClass 
+     * and to the file of the saved page.
+     * @param website the website
+     * @return the file path
+     */
+    public static String getRepositoryFile(String website) {
+    	return "src/main/resources/repository/"+normalizeURL(website)+".csv";
+    }
+    
     /**
      * Deletes the temporary directory assigned to this website.
      * @param website
@@ -0,0 +1,203 @@
+package it.uniroma3.crawler.util;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.function.ToLongFunction;
+
+/**
+ * Utility class providing 64-bit fingerprints of URLs.
+ * <br>
+ * Fingerprints are computed on the UTF-8 bytes of the given characters, encoded into
+ * a per-thread buffer: no intermediate String or byte array is allocated, and the
+ * {@link MessageDigest} is instantiated once per thread.
+ */
+public class FingerprintUtils {
+	public static final String SHA1 = "sha1";
+	public static final String MURMUR3 = "murmur3";
+
+	private static final ThreadLocal<MessageDigest> sha = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	});
+	private static final ThreadLocal<byte[]> digest = ThreadLocal.withInitial(() -> new byte[20]);
+	private static final ThreadLocal<byte[]> buffer = ThreadLocal.withInitial(() -> new byte[256]);
+
+	private static final long C1 = 0x87c37b91114253d5L;
+	private static final long C2 = 0x4cf5ad432745937fL;
+
+	/**
+	 * Returns the fingerprint function with the given name.
+	 * @param name either {@link #SHA1} or {@link #MURMUR3}
+	 * @return the fingerprint function, {@link #sha1} if the name is unknown
+	 */
+	public static ToLongFunction<CharSequence> fingerprint(String name) {
+		if (MURMUR3.equals(name)) return FingerprintUtils::murmur3;
+		return FingerprintUtils::sha1;
+	}
+
+	/**
+	 * Returns the first 64 bits of the SHA-1 digest of the UTF-8 bytes of the input.
+	 * @param input the input characters
+	 * @return the fingerprint
+	 */
+	public static long sha1(CharSequence input) {
+		MessageDigest md = sha.get();
+		byte[] out = digest.get();
+		byte[] bytes = buffer.get();
+		int len = encode(input, bytes);
+		if (len<0) {
+			bytes = new byte[-len];
+			buffer.set(bytes);
+			len = encode(input, bytes);
+		}
+		md.update(bytes, 0, len);
+		try {
+			md.digest(out, 0, out.length);
+		} catch (DigestException e) {
+			throw new IllegalStateException(e);
+		}
+		return getLong(out, 0, false);
+	}
+
+	/**
+	 * Returns the first 64 bits of the 128-bit MurmurHash3 (x64 variant, seed 0)
+	 * of the UTF-8 bytes of the input.
+	 * @param input the input characters
+	 * @return the fingerprint
+	 */
+	public static long murmur3(CharSequence input) {
+		byte[] bytes = buffer.get();
+		int len = encode(input, bytes);
+		if (len<0) {
+			bytes = new byte[-len];
+			buffer.set(bytes);
+			len = encode(input, bytes);
+		}
+		return murmur3(bytes, 0, len);
+	}
+
+	/**
+	 * Returns the first 64 bits of the 128-bit MurmurHash3 (x64 variant, seed 0)
+	 * of the given bytes.
+	 * @param data the byte array
+	 * @param offset the first byte to hash
+	 * @param len the number of bytes to hash
+	 * @return the fingerprint
+	 */
+	@SuppressWarnings("fallthrough")
+	public static long murmur3(byte[] data, int offset, int len) {
+		long h1 = 0, h2 = 0;
+		int blocks = len >>> 4;
+		for (int i=0; i<blocks; i++) {
+			long k1 = getLong(data, offset+i*16, true);
+			long k2 = getLong(data, offset+i*16+8, true);
+			h1 ^= mixK1(k1);
+			h1 = Long.rotateLeft(h1, 27) + h2;
+			h1 = h1*5 + 0x52dce729;
+			h2 ^= mixK2(k2);
+			h2 = Long.rotateLeft(h2, 31) + h1;
+			h2 = h2*5 + 0x38495ab5;
+		}
+		long k1 = 0, k2 = 0;
+		int tail = offset + (blocks<<4);
+		switch (len & 15) { // intentional fallthrough: each case adds one more tail byte
+		case 15: k2 ^= (long) (data[tail+14] & 0xff) << 48;
+		case 14: k2 ^= (long) (data[tail+13] & 0xff) << 40;
+		case 13: k2 ^= (long) (data[tail+12] & 0xff) << 32;
+		case 12: k2 ^= (long) (data[tail+11] & 0xff) << 24;
+		case 11: k2 ^= (long) (data[tail+10] & 0xff) << 16;
+		case 10: k2 ^= (long) (data[tail+9] & 0xff) << 8;
+		case 9:  k2 ^= (long) (data[tail+8] & 0xff);
+				 h2 ^= mixK2(k2);
+		case 8:  k1 ^= (long) (data[tail+7] & 0xff) << 56;
+		case 7:  k1 ^= (long) (data[tail+6] & 0xff) << 48;
+		case 6:  k1 ^= (long) (data[tail+5] & 0xff) << 40;
+		case 5:  k1 ^= (long) (data[tail+4] & 0xff) << 32;
+		case 4:  k1 ^= (long) (data[tail+3] & 0xff) << 24;
+		case 3:  k1 ^= (long) (data[tail+2] & 0xff) << 16;
+		case 2:  k1 ^= (long) (data[tail+1] & 0xff) << 8;
+		case 1:  k1 ^= (long) (data[tail] & 0xff);
+				 h1 ^= mixK1(k1);
+		}
+		h1 ^= len;
+		h2 ^= len;
+		h1 += h2;
+		h2 += h1;
+		h1 = fmix(h1);
+		h2 = fmix(h2);
+		h1 += h2;
+		return h1;
+	}
+
+	/**
+	 * Encodes the input characters as UTF-8 into the given buffer.
+	 * @return the number of bytes written, or the opposite of the
+	 * needed buffer size if the buffer is too small
+	 */
+	private static int encode(CharSequence input, byte[] out) {
+		int n = input.length();
+		if (n*3 > out.length)
+			return -(n*3);
+		int j = 0;
+		for (int i=0; i<n; i++) {
+			char c = input.charAt(i);
+			if (c < 0x80)
+				out[j++] = (byte) c;
+			else if (c < 0x800) {
+				out[j++] = (byte) (0xc0 | (c >> 6));
+				out[j++] = (byte) (0x80 | (c & 0x3f));
+			}
+			else if (Character.isHighSurrogate(c) && i+1<n
+					&& Character.isLowSurrogate(input.charAt(i+1))) {
+				int cp = Character.toCodePoint(c, input.charAt(++i));
+				out[j++] = (byte) (0xf0 | (cp >> 18));
+				out[j++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+				out[j++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+				out[j++] = (byte) (0x80 | (cp & 0x3f));
+			}
+			else if (Character.isSurrogate(c))
+				out[j++] = '?'; // unpaired surrogate, as String.getBytes does
+			else {
+				out[j++] = (byte) (0xe0 | (c >> 12));
+				out[j++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				out[j++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+		return j;
+	}
+
+	private static long getLong(byte[] b, int i, boolean littleEndian) {
+		long v = 0;
+		for (int k=0; k<8; k++) {
+			int shift = (littleEndian) ? k*8 : (7-k)*8;
+			v |= (long) (b[i+k] & 0xff) << shift;
+		}
+		return v;
+	}
+
+	private static long mixK1(long k1) {
+		k1 *= C1;
+		k1 = Long.rotateLeft(k1, 31);
+		return k1 * C2;
+	}
+
+	private static long mixK2(long k2) {
+		k2 *= C2;
+		k2 = Long.rotateLeft(k2, 33);
+		return k2 * C1;
+	}
+
+	private static long fmix(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+
+}
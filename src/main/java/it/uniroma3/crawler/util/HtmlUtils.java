@@ -87,16 +87,51 @@ public class HtmlUtils {
 	 */
 	public static HtmlPage restorePageFromFile(String path, String url) 
 			throws IOException {
-		String src = new String(Files.readAllBytes(
+		return restorePage(readPageFile(path), url);
+	}
+	
+	/**
+	 * Reads the HTML source of the given stored HTML file.
+	 * @param path the path to the html file
+	 * @return the HTML source
+	 * @throws IOException if an IO error occurs
+	 */
+	public static String readPageFile(String path) throws IOException {
+		return new String(Files.readAllBytes(
 				Paths.get(path.replaceFirst("^/(.:/)", "$1"))), 
 				StandardCharsets.ISO_8859_1);
-		StringWebResponse response = new StringWebResponse(src, new URL(url));
+	}
+	
+	/**
+	 * Produces a {@link HtmlPage} object from the given HTML source 
+	 * with the given URL.
+	 * @param src the HTML source
+	 * @param url the URL that this should be associated with
+	 * @return the loaded HtmlPage
+	 * @throws IOException if an IO error occurs
+	 */
+	public static HtmlPage restorePage(String src, String url) throws IOException {
 		WebClient client = makeWebClient();
-		HtmlPage page = HTMLParser.parseHtml(response, client.getCurrentWindow());
+		HtmlPage page = restorePage(src, url, client);
 		client.close();
 		return page;
 	}
 	
+	/**
+	 * Produces a {@link HtmlPage} object from the given HTML source 
+	 * with the given URL, in the current window of the given client.
+	 * @param src the HTML source
+	 * @param url the URL that this should be associated with
+	 * @param client the WebClient to parse the page with
+	 * @return the loaded HtmlPage
+	 * @throws IOException if an IO error occurs
+	 */
+	public static HtmlPage restorePage(String src, String url, WebClient client) 
+			throws IOException {
+		StringWebResponse response = new StringWebResponse(src, new URL(url));
+		return HTMLParser.parseHtml(response, client.getCurrentWindow());
+	}
+	
 	/**
 	 * Saves the specified {@link HtmlPage} into the given directory.
 	 * The file path will be the same as the URL path, starting from the 
@@ -0,0 +1,142 @@
+package it.uniroma3.crawler.util;
+
+import static it.uniroma3.crawler.util.HtmlUtils.makeWebClient;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+import com.gargoylesoftware.htmlunit.StringWebResponse;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.WebResponseData;
+import com.gargoylesoftware.htmlunit.html.HTMLParser;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.gargoylesoftware.htmlunit.util.NameValuePair;
+
+/**
+ * A lightweight fetcher of static web pages, for the PageClasses that do not need JavaScript.
+ * <br>
+ * Pages are downloaded with a plain HTTP client sharing a pool of keep-alive connections,
+ * then parsed into a {@link HtmlPage} by the HTML parser alone: no browser window is loaded,
+ * no script, stylesheet or frame is processed. The resulting pages support the same XPath
+ * evaluation of the ones fetched by a {@link WebClient} (see {@link XPathUtils}).
+ * <br>
+ * Each thread parses pages in its own window of a JavaScript-disabled WebClient.
+ * This class is thread-safe.
+ */
+public class LightFetcher {
+	private final CloseableHttpClient http;
+	private final ThreadLocal<WebClient> parser;
+	private final List<WebClient> parsers;
+
+	/**
+	 * Constructs a new LightFetcher.
+	 * @param maxConnections the max number of open connections
+	 * @param timeout the connection and socket timeout in milliseconds
+	 */
+	public LightFetcher(int maxConnections, int timeout) {
+		PoolingHttpClientConnectionManager connections = new PoolingHttpClientConnectionManager();
+		connections.setMaxTotal(maxConnections);
+		connections.setDefaultMaxPerRoute(maxConnections);
+		this.http = HttpClients.custom()
+				.setConnectionManager(connections)
+				.setDefaultRequestConfig(RequestConfig.custom()
+						.setConnectTimeout(timeout)
+						.setSocketTimeout(timeout).build())
+				.build();
+		this.parsers = new ArrayList<>();
+		this.parser = ThreadLocal.withInitial(() -> {
+			WebClient client = makeWebClient(false);
+			synchronized (parsers) {
+				parsers.add(client);
+			}
+			return client;
+		});
+	}
+
+	/**
+	 * Fetches and parses the web page at the given URL, following redirects.
+	 * @param url the URL to fetch
+	 * @return the page, or null if the response is not an HTML page
+	 * @throws IOException if an IO error occurs
+	 */
+	public HtmlPage fetch(String url) throws IOException {
+		return parse(fetchResponse(url));
+	}
+
+	/**
+	 * Fetches the response at the given URL, following redirects, without parsing it.
+	 * @param url the URL to fetch
+	 * @return the response, associated with the request of the final location
+	 * @throws IOException if an IO error occurs
+	 */
+	public WebResponse fetchResponse(String url) throws IOException {
+		HttpGet get = new HttpGet(url);
+		HttpClientContext context = HttpClientContext.create();
+		long start = System.currentTimeMillis();
+		try (CloseableHttpResponse response = http.execute(get, context)) {
+			HttpEntity entity = response.getEntity();
+			byte[] body = (entity!=null) ? EntityUtils.toByteArray(entity) : new byte[0];
+			List<NameValuePair> headers = new ArrayList<>();
+			for (Header h : response.getAllHeaders())
+				headers.add(new NameValuePair(h.getName(), h.getValue()));
+
+			List<URI> redirects = context.getRedirectLocations();
+			URL location = (redirects==null || redirects.isEmpty())
+					? new URL(url) : redirects.get(redirects.size()-1).toURL();
+			return new WebResponse(
+					new WebResponseData(body, response.getStatusLine().getStatusCode(),
+							response.getStatusLine().getReasonPhrase(), headers),
+					new WebRequest(location), System.currentTimeMillis()-start);
+		}
+	}
+
+	/**
+	 * Parses the given response into a web page.
+	 * @param webResponse the response returned by {@link #fetchResponse(String)}
+	 * @return the page, or null if the response is not an HTML page
+	 * @throws IOException if an IO error occurs
+	 */
+	public HtmlPage parse(WebResponse webResponse) throws IOException {
+		String type = webResponse.getContentType();
+		if (!type.isEmpty() && !type.contains("html"))
+			return null;
+		// the content is decoded once, with the charset detected by HtmlUnit:
+		// parsing a StringWebResponse is much faster than a raw one
+		URL location = webResponse.getWebRequest().getUrl();
+		StringWebResponse decoded = new StringWebResponse(webResponse.getContentAsString(), 
+				webResponse.getContentCharset(), location);
+		return HTMLParser.parseHtml(decoded, parser.get().getCurrentWindow());
+	}
+
+	/**
+	 * Closes the open connections and the parsing clients
+	 */
+	public void close() {
+		try {
+			http.close();
+		} catch (IOException e) {
+			// connections are dropped anyway
+		}
+		synchronized (parsers) {
+			parsers.forEach(WebClient::close);
+			parsers.clear();
+		}
+	}
+
+}
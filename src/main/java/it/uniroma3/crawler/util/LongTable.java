@@ -0,0 +1,63 @@
+package it.uniroma3.crawler.util;
+
+/**
+ * An open-addressed, linear-probing map of primitive long keys to long values.
+ * <br>
+ * The key 0 marks an empty slot, so it is stored as 1: keys are expected to be
+ * 64-bit fingerprints, whose collisions are checked by the caller.
+ */
+class LongTable {
+	private long[] keys, values;
+	private int size;
+
+	LongTable(long capacity) {
+		int slots = Integer.highestOneBit((int) Math.min(1<<29, Math.max(8, capacity*2)-1)) << 1;
+		this.keys = new long[slots];
+		this.values = new long[slots];
+	}
+
+	/**
+	 * Inserts or replaces the value of the given key
+	 */
+	void put(long key, long value) {
+		if (key==0) key = 1;
+		if ((size+1)*2>keys.length) grow();
+		int i = slot(key);
+		while (keys[i]!=0 && keys[i]!=key)
+			i = (i+1) & (keys.length-1);
+		if (keys[i]==0) size++;
+		keys[i] = key;
+		values[i] = value;
+	}
+
+	/**
+	 * Returns the value of the given key, or the given default value if missing
+	 */
+	long get(long key, long missing) {
+		if (key==0) key = 1;
+		int i = slot(key);
+		while (keys[i]!=0) {
+			if (keys[i]==key) return values[i];
+			i = (i+1) & (keys.length-1);
+		}
+		return missing;
+	}
+
+	int size() {
+		return size;
+	}
+
+	private int slot(long key) {
+		return (int) (key ^ (key >>> 32)) & (keys.length-1);
+	}
+
+	private void grow() {
+		long[] oldKeys = keys, oldValues = values;
+		this.keys = new long[oldKeys.length*2];
+		this.values = new long[oldKeys.length*2];
+		this.size = 0;
+		for (int i=0;i<oldKeys.length;i++)
+			if (oldKeys[i]!=0) put(oldKeys[i], oldValues[i]);
+	}
+
+}
@@ -0,0 +1,23 @@
+package it.uniroma3.crawler.util;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.ExtensionIdProvider;
+
+public class Metrics extends AbstractExtensionId<CrawlMetrics> 
+						implements ExtensionIdProvider {
+	
+	public final static Metrics MetricsProvider = new Metrics();
+
+	private Metrics() {}
+
+	@Override
+	public Metrics lookup() {
+		return MetricsProvider;
+	}
+
+	@Override
+	public CrawlMetrics createExtension(ExtendedActorSystem system) {
+		return new CrawlMetrics();
+	}
+}
@@ -0,0 +1,159 @@
+package it.uniroma3.crawler.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.typesafe.config.Config;
+
+import akka.actor.Extension;
+
+/**
+ * A bounded cache of parsed {@link HtmlPage} instances, one per node 
+ * (see {@link PageCaches}), so that a page saved on disk can be
+ * extracted without parsing its file again.
+ * <br>
+ * The cache holds at most the configured number of pages, whose HTML source
+ * (as received, not their parsed DOM, which takes several times more memory)
+ * is at most the configured number of bytes, evicting the least recently used pages first.
+ * Pages older than the configured age are evicted as well, by {@link #expire()}
+ * (invoked periodically, see {@link PageCaches}) or when they are next accessed.
+ * A page that is not in the cache must be restored from the page store
+ * (see {@link PageStore#restore(String, String)}).
+ */
+public class PageCache implements Extension {
+	private final int maxPages;
+	private final long maxSourceBytes;
+	private final long maxAge;
+	private final LinkedHashMap<String, Entry> pages;
+	private long sourceBytes;
+	private long hits, misses;
+
+	private static class Entry {
+		private final HtmlPage page;
+		private final long size;
+		private final long created;
+
+		private Entry(HtmlPage page, long size, long created) {
+			this.page = page;
+			this.size = size;
+			this.created = created;
+		}
+	}
+
+	public PageCache(Config config) {
+		this((config.hasPath("crawler.repository.pagecache")) ? 
+				config.getInt("crawler.repository.pagecache") : 256,
+			((config.hasPath("crawler.repository.pagecachesourcemb")) ? 
+				config.getLong("crawler.repository.pagecachesourcemb") : 16)*1024L*1024L,
+			(config.hasPath("crawler.repository.pagecacheage")) ? 
+				config.getLong("crawler.repository.pagecacheage") : 60000);
+	}
+
+	/**
+	 * Constructs a new PageCache.
+	 * @param maxPages the max number of cached pages, 0 to disable the cache
+	 * @param maxSourceBytes the max total length in bytes of the HTML source of the cached pages
+	 * (not of their parsed DOM)
+	 * @param maxAge the age in milliseconds after which a page is evicted
+	 */
+	public PageCache(int maxPages, long maxSourceBytes, long maxAge) {
+		this.maxPages = maxPages;
+		this.maxSourceBytes = maxSourceBytes;
+		this.maxAge = maxAge;
+		this.pages = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	/**
+	 * Caches the given page.
+	 * @param url the URL of the page
+	 * @param page the parsed page
+	 */
+	public synchronized void put(String url, HtmlPage page) {
+		if (maxPages<=0) return;
+		long size = Math.max(0, page.getWebResponse().getContentLength());
+		remove(url);
+		if (size>maxSourceBytes) return;
+		pages.put(url, new Entry(page, size, System.currentTimeMillis()));
+		sourceBytes += size;
+		evict();
+	}
+
+	/**
+	 * Returns the cached page with the given URL.
+	 * @param url the URL of the page
+	 * @return the page, or null if not cached
+	 */
+	public synchronized HtmlPage get(String url) {
+		Entry entry = pages.get(url);
+		if (entry!=null && System.currentTimeMillis()-entry.created>=maxAge) {
+			remove(url);
+			entry = null;
+		}
+		if (entry==null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.page;
+	}
+
+	/**
+	 * Removes the page with the given URL.
+	 * @param url the URL of the page
+	 */
+	public synchronized void remove(String url) {
+		Entry entry = pages.remove(url);
+		if (entry!=null) sourceBytes -= entry.size;
+	}
+
+	/**
+	 * Removes the pages older than the max age.
+	 */
+	public synchronized void expire() {
+		long now = System.currentTimeMillis();
+		Iterator<Entry> it = pages.values().iterator();
+		while (it.hasNext()) {
+			Entry entry = it.next();
+			if (now-entry.created>=maxAge) {
+				it.remove();
+				sourceBytes -= entry.size;
+			}
+		}
+	}
+
+	/**
+	 * Returns the age in milliseconds after which a page is evicted
+	 * @return the max age of the cached pages
+	 */
+	public long getMaxAge() {
+		return maxAge;
+	}
+
+	public synchronized int size() {
+		return pages.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	private void evict() {
+		long now = System.currentTimeMillis();
+		Iterator<Map.Entry<String, Entry>> it = pages.entrySet().iterator();
+		while (it.hasNext()) {
+			Entry eldest = it.next().getValue();
+			if (pages.size()<=maxPages && sourceBytes<=maxSourceBytes 
+					&& now-eldest.created<maxAge)
+				break;
+			it.remove();
+			sourceBytes -= eldest.size;
+		}
+	}
+
+}
@@ -0,0 +1,36 @@
+package it.uniroma3.crawler.util;
+
+import java.util.concurrent.TimeUnit;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.Cancellable;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.ExtensionIdProvider;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+public class PageCaches extends AbstractExtensionId<PageCache> 
+						implements ExtensionIdProvider {
+	
+	public final static PageCaches CacheProvider = new PageCaches();
+
+	private PageCaches() {}
+
+	@Override
+	public PageCaches lookup() {
+		return CacheProvider;
+	}
+
+	@Override
+	public PageCache createExtension(ExtendedActorSystem system) {
+		PageCache cache = new PageCache(system.settings().config());
+		if (cache.getMaxAge()>0) {
+			FiniteDuration interval = 
+					Duration.create(Math.max(1, cache.getMaxAge()/2), TimeUnit.MILLISECONDS);
+			Cancellable sweep = system.scheduler().schedule(interval, interval, 
+					cache::expire, system.dispatcher());
+			system.registerOnTermination(sweep::cancel);
+		}
+		return cache;
+	}
+}
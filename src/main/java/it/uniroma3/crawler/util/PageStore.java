@@ -0,0 +1,139 @@
+package it.uniroma3.crawler.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.typesafe.config.Config;
+
+import akka.actor.Extension;
+
+/**
+ * The store of the crawled pages of a node (see {@link PageStores}).
+ * <br>
+ * In {@link #MIRROR} mode each page is saved to its own file, whose path mirrors
+ * the URL path (see {@link HtmlUtils#savePage}). In {@link #SEGMENTS} mode the pages
+ * of each website are appended to the compressed segment files of a
+ * {@link SegmentPageStore}, and identical pages are stored once. The segment files
+ * of a node are named after its actor system, so that nodes sharing a directory
+ * do not write to the same files. Their indexes are written periodically by {@link #flush()}.
+ * <br>
+ * Either way a page is saved to a location that is written to the repository
+ * of the website, and restored from it by {@link #restore(String, String)}:
+ * pages saved in both modes can be restored whatever the current mode.
+ */
+public class PageStore implements Extension {
+	public static final String MIRROR = "mirror";
+	public static final String SEGMENTS = "segments";
+
+	private final String mode;
+	private final long segmentBytes;
+	private final String prefix;
+	private final Map<String, SegmentPageStore> stores;
+
+	public PageStore(Config config, String prefix) {
+		this((config.hasPath("crawler.repository.pagestore")) ?
+				config.getString("crawler.repository.pagestore") : MIRROR,
+			((config.hasPath("crawler.repository.segmentmb")) ?
+				config.getLong("crawler.repository.segmentmb") : 256)*1024L*1024L, prefix);
+	}
+
+	/**
+	 * Constructs a new PageStore.
+	 * @param mode either {@link #MIRROR} or {@link #SEGMENTS}
+	 * @param segmentBytes the size in bytes of the segment files
+	 * @param prefix the prefix of the names of the segment files
+	 */
+	public PageStore(String mode, long segmentBytes, String prefix) {
+		this.mode = mode;
+		this.segmentBytes = segmentBytes;
+		this.prefix = prefix;
+		this.stores = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Saves the given page of the given website.
+	 * @param html the page to save
+	 * @param website the website of the page
+	 * @return the location of the saved page, or an empty string
+	 * if a IO error occurs while saving the page
+	 */
+	public String save(HtmlPage html, String website) {
+		if (!SEGMENTS.equals(mode))
+			return HtmlUtils.savePage(html, FileUtils.getPagesDirectory(website), true);
+		try {
+			return getStore(website).append(html.getUrl().toString(),
+					html.asXml().getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			return "";
+		}
+	}
+
+	/**
+	 * Restores the page saved at the given location, in any mode.
+	 * @param location the location returned by {@link #save(HtmlPage, String)}
+	 * @param url the URL that the page should be associated with
+	 * @return the restored page
+	 * @throws IOException if the page cannot be read
+	 */
+	public static HtmlPage restore(String location, String url) throws IOException {
+		return HtmlUtils.restorePage(read(location), url);
+	}
+
+	/**
+	 * Reads the HTML source of the page saved at the given location, in any mode.
+	 * @param location the location returned by {@link #save(HtmlPage, String)}
+	 * @return the HTML source
+	 * @throws IOException if the page cannot be read
+	 */
+	public static String read(String location) throws IOException {
+		if (SegmentPageStore.isLocator(location))
+			return new String(SegmentPageStore.read(location), StandardCharsets.UTF_8);
+		return HtmlUtils.readPageFile(location);
+	}
+
+	/**
+	 * Writes the buffered index entries of the segment files of every website
+	 */
+	public void flush() {
+		for (SegmentPageStore store : stores.values()) {
+			try {
+				store.flush();
+			} catch (IOException e) {
+				// written again at the next flush or when closed
+			}
+		}
+	}
+
+	/**
+	 * Closes the segment files of every website
+	 */
+	public void close() {
+		for (SegmentPageStore store : stores.values()) {
+			try {
+				store.close();
+			} catch (IOException e) {
+				// the stored pages are already written, only the index may be incomplete
+			}
+		}
+		stores.clear();
+	}
+
+	private SegmentPageStore getStore(String website) throws IOException {
+		SegmentPageStore store = stores.get(website);
+		if (store==null) {
+			synchronized (stores) {
+				store = stores.get(website);
+				if (store==null) {
+					store = new SegmentPageStore(FileUtils.getStoreDirectory(website),
+							prefix, segmentBytes);
+					stores.put(website, store);
+				}
+			}
+		}
+		return store;
+	}
+
+}
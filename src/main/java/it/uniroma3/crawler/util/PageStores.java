@@ -0,0 +1,40 @@
+package it.uniroma3.crawler.util;
+
+import java.util.concurrent.TimeUnit;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.Cancellable;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.ExtensionIdProvider;
+import it.uniroma3.crawler.settings.CrawlerSettings;
+import it.uniroma3.crawler.settings.Settings;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+public class PageStores extends AbstractExtensionId<PageStore> 
+						implements ExtensionIdProvider {
+	
+	public final static PageStores StoreProvider = new PageStores();
+
+	private PageStores() {}
+
+	@Override
+	public PageStores lookup() {
+		return StoreProvider;
+	}
+
+	@Override
+	public PageStore createExtension(ExtendedActorSystem system) {
+		PageStore store = new PageStore(system.settings().config(), system.name());
+		system.registerOnTermination(store::close);
+		CrawlerSettings set = Settings.SettingsProvider.get(system);
+		if (set.indexflush>0) {
+			// the same interval as the repository files
+			FiniteDuration interval = Duration.create(set.indexflush, TimeUnit.MILLISECONDS);
+			Cancellable flush = system.scheduler().schedule(interval, interval, 
+					store::flush, system.dispatcher());
+			system.registerOnTermination(flush::cancel);
+		}
+		return store;
+	}
+}
@@ -0,0 +1,139 @@
+package it.uniroma3.crawler.util;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.size;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import it.uniroma3.crawler.model.PageClass;
+
+/**
+ * The files of the data records extracted from the crawled pages, one
+ * tab-separated file for each {@link PageClass}, with the field names as header.
+ * A record with a single multi-valued field (values separated by tabs) is
+ * written as one line for each value.
+ * <br>
+ * Each file is opened once and kept open by a buffered writer: the buffer is
+ * written to the file whenever it is full, or when {@link #flush()} is called.
+ * This class is thread-safe.
+ */
+public class RecordFiles implements RecordSink {
+	private final Function<String, String> directories;
+	private final int bufferSize;
+	private final Map<String, Writer> writers;
+	private final Set<String> dirty;
+
+	/**
+	 * Constructs a new RecordFiles.
+	 * @param directories the output directory of the records of each website
+	 * @param bufferSize the size in bytes of the buffer of each file
+	 */
+	public RecordFiles(Function<String, String> directories, int bufferSize) {
+		this.directories = directories;
+		this.bufferSize = Math.max(1, bufferSize);
+		this.writers = new HashMap<>();
+		this.dirty = new HashSet<>();
+	}
+
+	@Override
+	public synchronized void write(PageClass src, String url, String[] record) throws IOException {
+		String[] newRec = new String[record.length+1];
+		newRec[0] = url;
+		for (int i=0;i<record.length;i++) {
+			newRec[i+1] = record[i];
+		}
+
+		String output = directories.apply(src.getDomain());
+		String file = output+"/"+src.getName()+".csv";
+		Writer out = getWriter(output, file, src);
+		if (newRec.length==2 && newRec[1].contains("\t"))
+			writeMultipleRecords(out, newRec);
+		else
+			writeSingleRecord(out, newRec);
+		dirty.add(file);
+	}
+
+	/**
+	 * Writes to disk the files that received records since the last flush.
+	 */
+	@Override
+	public synchronized void flush() throws IOException {
+		IOException failure = null;
+		for (String file : dirty) {
+			try {
+				writers.get(file).flush();
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		dirty.clear();
+		if (failure!=null) throw failure;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		IOException failure = null;
+		for (Writer out : writers.values()) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		writers.clear();
+		dirty.clear();
+		if (failure!=null) throw failure;
+	}
+
+	/* Returns the open writer of the records of the given PageClass,
+	 * opening its file (and writing the header) the first time */
+	private Writer getWriter(String output, String file, PageClass src) throws IOException {
+		Writer out = writers.get(file);
+		if (out!=null) return out;
+
+		Path dir = Paths.get(output);
+		if (!exists(dir))
+			createDirectories(dir);
+		Path path = Paths.get(file);
+		boolean header = !exists(path) || size(path)==0;
+		out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true),
+				StandardCharsets.UTF_8), bufferSize);
+		writers.put(file, out);
+		if (header) // save file header
+			writeSingleRecord(out, src.getDataFieldNames());
+		return out;
+	}
+
+	private void writeSingleRecord(Writer csvOutput, String[] record)
+			throws IOException {
+		int len = record.length;
+		for (int i=0;i<len;i++) {
+			csvOutput.write(record[i]);
+			if (i<len-1)
+				csvOutput.write("\t");
+		}
+		if (len>0) csvOutput.write("\n");
+	}
+
+	private void writeMultipleRecords(Writer csvOutput, String[] records)
+			throws IOException {
+		for (String r : records[1].split("\t")) {
+			csvOutput.write(records[0]+"\t"+r);
+			csvOutput.write("\n");
+		}
+	}
+
+}
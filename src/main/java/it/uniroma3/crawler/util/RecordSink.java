@@ -0,0 +1,56 @@
+package it.uniroma3.crawler.util;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+import it.uniroma3.crawler.model.PageClass;
+
+/**
+ * The output of the data records extracted from the crawled pages,
+ * one file for each {@link PageClass}.
+ */
+public interface RecordSink {
+	/** Tab-separated text files (see {@link RecordFiles}) */
+	String TSV = "tsv";
+	/** Compressed columnar files (see {@link ColumnarRecordFiles}) */
+	String COLUMNAR = "columnar";
+
+	/**
+	 * Creates a RecordSink in the given format.
+	 * @param format either {@link #TSV} or {@link #COLUMNAR}
+	 * @param directories the output directory of the records of each website
+	 * @param bufferSize the size in bytes of the buffer of each text file
+	 * @param rowGroup the number of rows of each row group of the columnar files
+	 * @return the RecordSink, tab-separated if the format is unknown
+	 */
+	static RecordSink create(String format, Function<String, String> directories,
+			int bufferSize, int rowGroup) {
+		if (COLUMNAR.equals(format))
+			return new ColumnarRecordFiles(directories, rowGroup);
+		return new RecordFiles(directories, bufferSize);
+	}
+
+	/**
+	 * Appends a record extracted from a page of the given PageClass.
+	 * A record with a single multi-valued field (values separated by tabs)
+	 * is written as one row for each value.
+	 * @param src the PageClass of the page
+	 * @param url the URL of the page
+	 * @param record the extracted values
+	 * @throws IOException if the record cannot be written
+	 */
+	void write(PageClass src, String url, String[] record) throws IOException;
+
+	/**
+	 * Writes to disk the records that are ready to be written.
+	 * @throws IOException if a file cannot be written
+	 */
+	void flush() throws IOException;
+
+	/**
+	 * Writes every record and closes every file.
+	 * @throws IOException if a file cannot be written
+	 */
+	void close() throws IOException;
+
+}
@@ -0,0 +1,305 @@
+package it.uniroma3.crawler.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+
+import com.csvreader.CsvReader;
+import com.csvreader.CsvWriter;
+
+/**
+ * The repository of the pages saved for a website: a tab-separated file of
+ * <i>URL, PageClass, file path</i> records, plus an index file mapping the
+ * fingerprint of each URL (see {@link FingerprintUtils#murmur3(CharSequence)})
+ * to the offset of its record.
+ * <br>
+ * Records are appended through buffered streams, and reach the disk in groups
+ * when {@link #flush()} is called: the records file is always flushed before
+ * the index file, so the index never refers to a missing record.
+ * <br>
+ * A record is looked up by reading the index once, then only the record at the
+ * indexed offset: the records file is never scanned. If a URL was saved more
+ * than once its latest record is returned. The latest records of all the URLs
+ * can be read sequentially by {@link #forEach(Consumer)}.
+ * <br><br>
+ * The index file is named after the records file with an <i>.idx</i> suffix;
+ * if it is missing it is rebuilt from the records file.
+ * This class is not thread-safe.
+ */
+public class RepositoryIndex {
+	private static final int ENTRY_SIZE = 16; // fingerprint, offset
+
+	private final Path records;
+	private final Path index;
+
+	private OutputStream recordsOut;
+	private DataOutputStream indexOut;
+	private long offset; // length of the records file, including buffered records
+	private int pending; // records not flushed yet
+
+	private LongTable offsets; // fingerprint -> offset
+
+	/**
+	 * A saved page
+	 */
+	public static class Entry {
+		private final String url, pageClass, filePath;
+
+		public Entry(String url, String pageClass, String filePath) {
+			this.url = url;
+			this.pageClass = pageClass;
+			this.filePath = filePath;
+		}
+
+		public String getUrl() {
+			return url;
+		}
+
+		public String getPageClass() {
+			return pageClass;
+		}
+
+		public String getFilePath() {
+			return filePath;
+		}
+	}
+
+	/**
+	 * Constructs the RepositoryIndex of the given website
+	 * (see {@link FileUtils#getRepositoryFile(String)}).
+	 * @param website the website
+	 */
+	public RepositoryIndex(String website) {
+		this(Paths.get(FileUtils.getRepositoryFile(website)));
+	}
+
+	/**
+	 * Constructs the RepositoryIndex stored in the given records file.
+	 * @param records the path of the records file
+	 */
+	public RepositoryIndex(Path records) {
+		this.records = records;
+		this.index = Paths.get(records.toString()+".idx");
+	}
+
+	/**
+	 * Appends the record of a saved page. The record is buffered until
+	 * {@link #flush()} is called, or the buffers are full.
+	 * @param url the URL of the page
+	 * @param pageClass the name of the PageClass of the page
+	 * @param filePath the path of the saved page
+	 * @throws IOException if the record cannot be written
+	 */
+	public void append(String url, String pageClass, String filePath) throws IOException {
+		if (recordsOut==null)
+			openWriter();
+		StringWriter line = new StringWriter();
+		CsvWriter csv = new CsvWriter(line, '\t');
+		csv.setRecordDelimiter('\n');
+		csv.writeRecord(new String[]{url, pageClass, filePath});
+		csv.close();
+		byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+
+		long fp = FingerprintUtils.murmur3(url);
+		recordsOut.write(bytes);
+		indexOut.writeLong(fp);
+		indexOut.writeLong(offset);
+		if (offsets!=null) offsets.put(fp, offset);
+		offset += bytes.length;
+		pending++;
+	}
+
+	/**
+	 * Writes the buffered records to disk.
+	 * @throws IOException if the records cannot be written
+	 */
+	public void flush() throws IOException {
+		if (recordsOut!=null && pending>0) {
+			recordsOut.flush();
+			indexOut.flush();
+			pending = 0;
+		}
+	}
+
+	/**
+	 * Returns the number of records appended since the last flush
+	 * @return the number of buffered records
+	 */
+	public int getPending() {
+		return pending;
+	}
+
+	/**
+	 * Looks up the latest record of the given URL.
+	 * @param url the URL
+	 * @return the record, or null if the URL was never saved
+	 * @throws IOException if the repository cannot be read
+	 */
+	public Entry lookup(String url) throws IOException {
+		if (offsets==null)
+			load();
+		long position = offsets.get(FingerprintUtils.murmur3(url), -1);
+		if (position<0) return null;
+		flush();
+		Entry entry = read(position);
+		return (entry!=null && entry.getUrl().equals(url)) ? entry : null;
+	}
+
+	/**
+	 * Performs the given action on the latest record of each URL, reading the
+	 * records file sequentially.
+	 * @param action the action to perform
+	 * @throws IOException if the repository cannot be read
+	 */
+	public void forEach(Consumer<Entry> action) throws IOException {
+		if (offsets==null)
+			load();
+		if (!Files.exists(records)) return;
+		scan((entry, start) -> {
+			if (offsets.get(FingerprintUtils.murmur3(entry.getUrl()), -1)==start)
+				action.accept(entry);
+		});
+	}
+
+	/**
+	 * Returns the number of distinct URL fingerprints in the repository
+	 * @return the number of indexed URLs
+	 * @throws IOException if the index cannot be read
+	 */
+	public int size() throws IOException {
+		if (offsets==null)
+			load();
+		return offsets.size();
+	}
+
+	/**
+	 * Flushes and closes the repository files
+	 * @throws IOException if the buffered records cannot be written
+	 */
+	public void close() throws IOException {
+		if (recordsOut!=null) {
+			try {
+				recordsOut.close();
+			} finally {
+				indexOut.close();
+				recordsOut = null;
+				indexOut = null;
+				pending = 0;
+			}
+		}
+	}
+
+	private void openWriter() throws IOException {
+		Path parent = records.toAbsolutePath().getParent();
+		if (!Files.exists(parent))
+			Files.createDirectories(parent);
+		if (Files.exists(records) && !Files.exists(index))
+			rebuild();
+		this.offset = Files.exists(records) ? Files.size(records) : 0;
+		this.recordsOut = new BufferedOutputStream(new FileOutputStream(records.toFile(), true), 64*1024);
+		this.indexOut = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(index.toFile(), true), 16*1024));
+	}
+
+	/* Loads the index into memory, rebuilding it from the records if missing */
+	private void load() throws IOException {
+		flush();
+		if (Files.exists(records) && !Files.exists(index) && recordsOut==null)
+			rebuild();
+		long entries = Files.exists(index) ? Files.size(index)/ENTRY_SIZE : 0;
+		this.offsets = new LongTable(entries);
+		if (entries==0) return;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(index.toFile()), 64*1024))) {
+			for (long i=0;i<entries;i++)
+				offsets.put(in.readLong(), in.readLong());
+		}
+	}
+
+	/* Writes the index of the records file from scratch */
+	private void rebuild() throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(index.toFile()), 16*1024))) {
+			scan((entry, start) -> {
+				out.writeLong(FingerprintUtils.murmur3(entry.getUrl()));
+				out.writeLong(start);
+			});
+		}
+	}
+
+	/* Reads the records file sequentially, with the offset of each record */
+	private void scan(RecordVisitor visitor) throws IOException {
+		try (InputStream in = new BufferedInputStream(new FileInputStream(records.toFile()), 64*1024)) {
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			long position = 0, start = 0;
+			int b;
+			while ((b = in.read())!=-1) {
+				position++;
+				if (b=='\n') {
+					visit(visitor, line.toByteArray(), start);
+					line.reset();
+					start = position;
+				}
+				else if (b!='\r') line.write(b);
+			}
+			if (line.size()>0) visit(visitor, line.toByteArray(), start);
+		}
+	}
+
+	private void visit(RecordVisitor visitor, byte[] line, long start) throws IOException {
+		Entry entry = parse(new String(line, StandardCharsets.UTF_8));
+		if (entry!=null) visitor.visit(entry, start);
+	}
+
+	private interface RecordVisitor {
+		void visit(Entry entry, long start) throws IOException;
+	}
+
+	private Entry read(long position) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(records.toFile(), "r")) {
+			file.seek(position);
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			byte[] buffer = new byte[512];
+			int n;
+			read:
+			while ((n = file.read(buffer))>0) {
+				for (int i=0;i<n;i++) {
+					if (buffer[i]=='\n') {
+						line.write(buffer, 0, i);
+						break read;
+					}
+				}
+				line.write(buffer, 0, n);
+			}
+			if (line.size()==0) throw new EOFException("no record at "+position);
+			return parse(new String(line.toByteArray(), StandardCharsets.UTF_8).trim());
+		}
+	}
+
+	private Entry parse(String line) throws IOException {
+		CsvReader reader = new CsvReader(new StringReader(line), '\t');
+		try {
+			if (!reader.readRecord() || reader.getColumnCount()<3) return null;
+			return new Entry(reader.get(0), reader.get(1), reader.get(2));
+		} finally {
+			reader.close();
+		}
+	}
+
+}
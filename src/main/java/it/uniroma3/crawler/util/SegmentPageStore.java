@@ -0,0 +1,315 @@
+package it.uniroma3.crawler.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A content-addressed store of the pages of a website, appended to large
+ * compressed segment files instead of one file per page.
+ * <br>
+ * Each page is deflated on its own and appended to the current segment as a
+ * record <i>(URL length, URL, page length, compressed length, compressed page)</i>;
+ * once a segment exceeds the configured size a new one is started
+ * (<i>prefix.0.seg, prefix.1.seg, ...</i>). A page is located by the path of its
+ * segment and its offset, as <i>segment@offset</i>: the locator can be read
+ * back without opening the store (see {@link #read(String)}).
+ * <br>
+ * The index file <i>prefix.idx</i> maps the fingerprint of each URL and the hash
+ * of each page content to the locator of the page, so that identical pages
+ * are stored once whatever their URL. The index entries are buffered and written
+ * by {@link #flush()} and {@link #close()}: the index is reloaded when the store
+ * is opened again.
+ * <br>
+ * Stores sharing a directory must have different prefixes, e.g. one for each node:
+ * a store holds an exclusive lock on <i>prefix.lock</i> until it is closed.
+ * <br><br>
+ * This class is thread-safe.
+ */
+public class SegmentPageStore {
+	private static final String LOCATOR = ".seg@";
+
+	private final Path directory;
+	private final String prefix;
+	private final Pattern segments;
+	private final long segmentBytes;
+	private final LongTable urls; // URL fingerprint -> locator
+	private final LongTable contents; // content hash -> locator
+	private final Deflater deflater;
+	private final FileLock lock;
+
+	private DataOutputStream index;
+	private FileChannel out;
+	private int segment;
+	private long position;
+	private long stored, duplicates;
+
+	/**
+	 * Opens the store in the given directory, creating it if missing.
+	 * The names of its files start with <i>pages</i>.
+	 * @param directory the directory of the segment files
+	 * @param segmentBytes the size in bytes after which a new segment is started
+	 * @throws IOException if the store cannot be opened
+	 */
+	public SegmentPageStore(String directory, long segmentBytes) throws IOException {
+		this(directory, "pages", segmentBytes);
+	}
+
+	/**
+	 * Opens the store with the given prefix in the given directory, creating it if missing.
+	 * @param directory the directory of the segment files
+	 * @param prefix the prefix of the names of the segment and index files
+	 * @param segmentBytes the size in bytes after which a new segment is started
+	 * @throws IOException if the store cannot be opened, or is already open
+	 */
+	public SegmentPageStore(String directory, String prefix, long segmentBytes) throws IOException {
+		this.directory = Paths.get(directory);
+		this.prefix = prefix;
+		this.segments = Pattern.compile(Pattern.quote(prefix)+"\\.(\\d+)\\.seg");
+		this.segmentBytes = Math.max(1, segmentBytes);
+		this.urls = new LongTable(1024);
+		this.contents = new LongTable(1024);
+		Files.createDirectories(this.directory);
+		this.lock = lock();
+		try {
+			loadIndex();
+			this.segment = lastSegment();
+			openSegment();
+			this.index = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(indexFile().toFile(), true), 16*1024));
+		} catch (IOException e) {
+			if (out!=null) out.close();
+			lock.channel().close();
+			throw e;
+		}
+		this.deflater = new Deflater(Deflater.BEST_SPEED);
+	}
+
+	/**
+	 * Stores a page, unless a page with the same content is already stored.
+	 * @param url the URL of the page
+	 * @param content the page content
+	 * @return the locator of the stored page
+	 * @throws IOException if the page cannot be written
+	 */
+	public synchronized String append(String url, byte[] content) throws IOException {
+		long fp = FingerprintUtils.murmur3(url);
+		long hash = FingerprintUtils.murmur3(content, 0, content.length);
+		long locator = contents.get(hash, -1);
+		if (locator<0) {
+			byte[] record = record(url, content);
+			if (position>0 && position+record.length>segmentBytes) {
+				out.close();
+				segment++;
+				openSegment();
+			}
+			locator = ((long) segment << 40) | position;
+			ByteBuffer buffer = ByteBuffer.wrap(record);
+			while (buffer.hasRemaining())
+				out.write(buffer);
+			position += record.length;
+			contents.put(hash, locator);
+			stored++;
+		}
+		else duplicates++;
+		urls.put(fp, locator);
+		index.writeLong(fp);
+		index.writeLong(hash);
+		index.writeLong(locator);
+		return locator(locator);
+	}
+
+	/**
+	 * Returns the locator of the latest page stored for the given URL.
+	 * @param url the URL
+	 * @return the locator, or null if no page was stored for the URL
+	 */
+	public synchronized String locate(String url) {
+		long locator = urls.get(FingerprintUtils.murmur3(url), -1);
+		return (locator<0) ? null : locator(locator);
+	}
+
+	/**
+	 * Returns the number of pages written to the segments
+	 * @return the number of stored pages
+	 */
+	public synchronized long getStored() {
+		return stored;
+	}
+
+	/**
+	 * Returns the number of pages not written because their content was already stored
+	 * @return the number of duplicate pages
+	 */
+	public synchronized long getDuplicates() {
+		return duplicates;
+	}
+
+	/**
+	 * Writes the buffered index entries, so that the pages stored so far
+	 * are found if the store is opened again without being closed.
+	 * @throws IOException if the index cannot be written
+	 */
+	public synchronized void flush() throws IOException {
+		index.flush();
+	}
+
+	/**
+	 * Closes the current segment and the index, and releases the lock of this store
+	 * @throws IOException if the index cannot be written
+	 */
+	public synchronized void close() throws IOException {
+		try {
+			out.close();
+		} finally {
+			deflater.end();
+			try {
+				index.close();
+			} finally {
+				lock.channel().close();
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the given string is the locator of a page in a segment
+	 * @param location the location of a stored page
+	 * @return true if it is a segment locator
+	 */
+	public static boolean isLocator(String location) {
+		return location.contains(LOCATOR);
+	}
+
+	/**
+	 * Reads the content of the page with the given locator.
+	 * @param locator the locator returned by {@link #append(String, byte[])}
+	 * @return the page content
+	 * @throws IOException if the page cannot be read
+	 */
+	public static byte[] read(String locator) throws IOException {
+		int at = locator.lastIndexOf('@');
+		String segment = locator.substring(0, at);
+		long offset = Long.parseLong(locator.substring(at+1));
+		try (RandomAccessFile file = new RandomAccessFile(segment, "r")) {
+			file.seek(offset);
+			file.skipBytes(file.readInt()); // URL
+			byte[] content = new byte[file.readInt()];
+			byte[] compressed = new byte[file.readInt()];
+			file.readFully(compressed);
+			Inflater inflater = new Inflater();
+			try {
+				inflater.setInput(compressed);
+				int n = 0;
+				while (n<content.length && !inflater.finished())
+					n += inflater.inflate(content, n, content.length-n);
+				if (n<content.length)
+					throw new IOException("truncated page at "+locator);
+			} catch (DataFormatException e) {
+				throw new IOException("corrupted page at "+locator, e);
+			} finally {
+				inflater.end();
+			}
+			return content;
+		}
+	}
+
+	private byte[] record(String url, byte[] content) throws IOException {
+		deflater.reset();
+		deflater.setInput(content);
+		deflater.finish();
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length/4+64);
+		byte[] buffer = new byte[8192];
+		while (!deflater.finished())
+			compressed.write(buffer, 0, deflater.deflate(buffer));
+
+		byte[] name = url.getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(compressed.size()+name.length+12);
+		DataOutputStream record = new DataOutputStream(bytes);
+		record.writeInt(name.length);
+		record.write(name);
+		record.writeInt(content.length);
+		record.writeInt(compressed.size());
+		compressed.writeTo(record);
+		return bytes.toByteArray();
+	}
+
+	private String locator(long locator) {
+		return segmentFile((int) (locator >>> 40))+"@"+(locator & ((1L << 40)-1));
+	}
+
+	private String segmentFile(int n) {
+		return directory.resolve(prefix+"."+n+".seg").toString();
+	}
+
+	private Path indexFile() {
+		return directory.resolve(prefix+".idx");
+	}
+
+	private FileLock lock() throws IOException {
+		FileChannel channel = FileChannel.open(directory.resolve(prefix+".lock"),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		FileLock lock = null;
+		try {
+			lock = channel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			// already locked by this process
+		}
+		if (lock==null) {
+			channel.close();
+			throw new IOException("page store "+directory.resolve(prefix)+" is already open");
+		}
+		return lock;
+	}
+
+	private void openSegment() throws IOException {
+		this.out = FileChannel.open(Paths.get(segmentFile(segment)), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		this.position = out.size();
+	}
+
+	private int lastSegment() throws IOException {
+		int last = 0;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				Matcher m = segments.matcher(file.getFileName().toString());
+				if (m.matches()) last = Math.max(last, Integer.parseInt(m.group(1)));
+			}
+		}
+		return last;
+	}
+
+	private void loadIndex() throws IOException {
+		if (!Files.exists(indexFile())) return;
+		long entries = Files.size(indexFile())/24;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(indexFile().toFile()), 64*1024))) {
+			for (long i=0;i<entries;i++) {
+				long fp = in.readLong(), hash = in.readLong(), locator = in.readLong();
+				urls.put(fp, locator);
+				contents.put(hash, locator);
+			}
+		}
+	}
+
+}
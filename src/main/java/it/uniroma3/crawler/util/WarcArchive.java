@@ -0,0 +1,88 @@
+package it.uniroma3.crawler.util;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.typesafe.config.Config;
+
+import akka.actor.Extension;
+
+/**
+ * The WARC archive of the responses fetched by a node (see {@link WarcArchives}),
+ * with a {@link WarcWriter} for each website. The WARC files of a node are named
+ * after its actor system.
+ * <br>
+ * Responses are archived only if <code>crawler.repository.warc</code> is enabled.
+ */
+public class WarcArchive implements Extension {
+	private final boolean enabled;
+	private final long maxBytes;
+	private final String prefix;
+	private final Map<String, WarcWriter> writers;
+
+	public WarcArchive(Config config, String prefix) {
+		this((config.hasPath("crawler.repository.warc")) ? 
+				config.getBoolean("crawler.repository.warc") : false,
+			((config.hasPath("crawler.repository.warcmb")) ? 
+				config.getLong("crawler.repository.warcmb") : 1024)*1024L*1024L, prefix);
+	}
+
+	/**
+	 * Constructs a new WarcArchive.
+	 * @param enabled true to archive the responses
+	 * @param maxBytes the size in bytes of the WARC files
+	 * @param prefix the prefix of the names of the WARC files
+	 */
+	public WarcArchive(boolean enabled, long maxBytes, String prefix) {
+		this.enabled = enabled;
+		this.maxBytes = maxBytes;
+		this.prefix = prefix;
+		this.writers = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Returns true if responses are archived
+	 * @return true if the archive is enabled
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Archives the given response of the given website, if the archive is enabled.
+	 * @param response the fetched response
+	 * @param website the website of the response
+	 * @throws IOException if the response cannot be archived
+	 */
+	public void archive(WebResponse response, String website) throws IOException {
+		if (!enabled) return;
+		WarcWriter writer = writers.get(website);
+		if (writer==null) {
+			synchronized (writers) {
+				writer = writers.get(website);
+				if (writer==null) {
+					writer = new WarcWriter(FileUtils.getArchiveDirectory(website), prefix, maxBytes);
+					writers.put(website, writer);
+				}
+			}
+		}
+		writer.write(response);
+	}
+
+	/**
+	 * Closes the WARC files of every website
+	 */
+	public void close() {
+		for (WarcWriter writer : writers.values()) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				// the archived records are already written, only the CDX index may be incomplete
+			}
+		}
+		writers.clear();
+	}
+
+}
@@ -0,0 +1,25 @@
+package it.uniroma3.crawler.util;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.ExtensionIdProvider;
+
+public class WarcArchives extends AbstractExtensionId<WarcArchive> 
+						implements ExtensionIdProvider {
+	
+	public final static WarcArchives ArchiveProvider = new WarcArchives();
+
+	private WarcArchives() {}
+
+	@Override
+	public WarcArchives lookup() {
+		return ArchiveProvider;
+	}
+
+	@Override
+	public WarcArchive createExtension(ExtendedActorSystem system) {
+		WarcArchive archive = new WarcArchive(system.settings().config(), system.name());
+		system.registerOnTermination(archive::close);
+		return archive;
+	}
+}
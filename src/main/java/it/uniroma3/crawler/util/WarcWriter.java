@@ -0,0 +1,243 @@
+package it.uniroma3.crawler.util;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.codec.binary.Base32;
+import org.apache.commons.io.IOUtils;
+
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.util.NameValuePair;
+
+/**
+ * Archives the fetched responses of a website into rolling WARC files
+ * (<i>prefix-timestamp-00000.warc.gz, prefix-timestamp-00001.warc.gz, ...</i>).
+ * <br>
+ * Each file starts with a <i>warcinfo</i> record; each fetch is archived as a
+ * <i>response</i> record followed by its <i>request</i> record. Every record is
+ * compressed as a separate gzip member, so that it can be read back by seeking
+ * to its offset. Once a file exceeds the configured size a new one is started.
+ * <br>
+ * Every response is also appended to the CDX index of the writer (<i>prefix.cdx</i>),
+ * with the fields <i>N b a m s k S V g</i>: URL key, timestamp, URL, MIME type,
+ * status, payload digest, compressed record length, offset and file name.
+ * The index line is written together with the records of the response, so the index
+ * is up to date with the WARC files even if the writer is never closed.
+ * <br><br>
+ * The archived payload is the content as decoded by the HTTP client, so the
+ * <i>Content-Encoding</i> and <i>Transfer-Encoding</i> headers are dropped and
+ * <i>Content-Length</i> is set to the archived length.
+ * This class is thread-safe.
+ */
+public class WarcWriter {
+	private static final String CRLF = "\r\n";
+
+	private final Path directory;
+	private final String prefix;
+	private final long maxBytes;
+	private final String started;
+	private final Writer cdx;
+
+	private OutputStream out;
+	private String file;
+	private int files;
+	private long position;
+
+	/**
+	 * Opens a new WarcWriter in the given directory, creating it if missing.
+	 * @param directory the directory of the WARC files
+	 * @param prefix the prefix of the names of the WARC files and of the CDX index
+	 * @param maxBytes the size in bytes after which a new WARC file is started
+	 * @throws IOException if the CDX index cannot be opened
+	 */
+	public WarcWriter(String directory, String prefix, long maxBytes) throws IOException {
+		this.directory = Paths.get(directory);
+		this.prefix = prefix;
+		this.maxBytes = Math.max(1, maxBytes);
+		this.started = format("yyyyMMddHHmmss", new Date());
+		Files.createDirectories(this.directory);
+		Path index = this.directory.resolve(prefix+".cdx");
+		boolean header = !Files.exists(index) || Files.size(index)==0;
+		this.cdx = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(index.toFile(), true), StandardCharsets.UTF_8));
+		if (header) cdx.write(" CDX N b a m s k S V g\n");
+	}
+
+	/**
+	 * Archives the given response and the request that produced it.
+	 * @param response the fetched response
+	 * @throws IOException if the records cannot be written
+	 */
+	public synchronized void write(WebResponse response) throws IOException {
+		if (out==null || position>=maxBytes)
+			roll();
+		Date date = new Date();
+		String url = response.getWebRequest().getUrl().toString();
+		byte[] payload;
+		try (InputStream content = response.getContentAsStream()) {
+			payload = (content!=null) ? IOUtils.toByteArray(content) : new byte[0];
+		}
+		String digest = "sha1:"+new Base32().encodeAsString(sha1(payload));
+
+		String responseId = recordId();
+		byte[] block = concat(responseHead(response, payload.length), payload);
+		long offset = position;
+		int length = append(record("response", responseId, date, url,
+				"application/http;msgtype=response", block,
+				"WARC-Payload-Digest: "+digest+CRLF));
+		append(record("request", recordId(), date, url,
+				"application/http;msgtype=request", request(response.getWebRequest()),
+				"WARC-Concurrent-To: "+responseId+CRLF));
+
+		String mime = response.getContentType();
+		cdx.write(urlKey(response.getWebRequest().getUrl())+" "+format("yyyyMMddHHmmss", date)
+				+" "+url+" "+(mime.isEmpty() ? "-" : mime)+" "+response.getStatusCode()
+				+" "+digest.substring(5)+" "+length+" "+offset+" "+file+"\n");
+		cdx.flush();
+	}
+
+	/**
+	 * Closes the current WARC file and the CDX index
+	 * @throws IOException if the files cannot be written
+	 */
+	public synchronized void close() throws IOException {
+		try {
+			if (out!=null) out.close();
+		} finally {
+			out = null;
+			cdx.close();
+		}
+	}
+
+	/* Starts a new WARC file, with its warcinfo record */
+	private void roll() throws IOException {
+		if (out!=null) out.close();
+		this.file = String.format("%s-%s-%05d.warc.gz", prefix, started, files++);
+		this.out = new FileOutputStream(directory.resolve(file).toFile());
+		this.position = 0;
+		String info = "software: smart-crawler"+CRLF+"format: WARC File Format 1.0"+CRLF;
+		append(record("warcinfo", recordId(), new Date(), null, "application/warc-fields",
+				info.getBytes(StandardCharsets.UTF_8), "WARC-Filename: "+file+CRLF));
+	}
+
+	/* Writes a record as a gzip member, returning its compressed length */
+	private int append(byte[] record) throws IOException {
+		ByteArrayOutputStream member = new ByteArrayOutputStream(record.length/3+64);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(member)) {
+			gzip.write(record);
+		}
+		member.writeTo(out);
+		position += member.size();
+		return member.size();
+	}
+
+	private byte[] record(String type, String id, Date date, String url, String contentType,
+			byte[] block, String fields) {
+		StringBuilder head = new StringBuilder("WARC/1.0"+CRLF);
+		head.append("WARC-Type: "+type+CRLF);
+		head.append("WARC-Record-ID: "+id+CRLF);
+		head.append("WARC-Date: "+format("yyyy-MM-dd'T'HH:mm:ss'Z'", date)+CRLF);
+		if (url!=null) head.append("WARC-Target-URI: "+url+CRLF);
+		head.append(fields);
+		head.append("Content-Type: "+contentType+CRLF);
+		head.append("Content-Length: "+block.length+CRLF+CRLF);
+		return concat(concat(head.toString().getBytes(StandardCharsets.UTF_8), block),
+				(CRLF+CRLF).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private byte[] responseHead(WebResponse response, int length) {
+		StringBuilder head = new StringBuilder("HTTP/1.1 "+response.getStatusCode()+" "
+				+response.getStatusMessage()+CRLF);
+		for (NameValuePair header : response.getResponseHeaders()) {
+			String name = header.getName();
+			if (!name.equalsIgnoreCase("Content-Encoding") && !name.equalsIgnoreCase("Transfer-Encoding")
+					&& !name.equalsIgnoreCase("Content-Length"))
+				head.append(name+": "+header.getValue()+CRLF);
+		}
+		head.append("Content-Length: "+length+CRLF+CRLF);
+		return head.toString().getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	private byte[] request(WebRequest request) {
+		URL url = request.getUrl();
+		String path = url.getPath().isEmpty() ? "/" : url.getPath();
+		if (url.getQuery()!=null) path += "?"+url.getQuery();
+		StringBuilder head = new StringBuilder(request.getHttpMethod()+" "+path+" HTTP/1.1"+CRLF);
+		head.append("Host: "+url.getAuthority()+CRLF);
+		request.getAdditionalHeaders().forEach((name, value) -> head.append(name+": "+value+CRLF));
+		StringBuilder body = new StringBuilder();
+		if (request.getRequestBody()!=null)
+			body.append(request.getRequestBody());
+		else {
+			for (NameValuePair param : request.getRequestParameters()) {
+				if (body.length()>0) body.append("&");
+				body.append(param.getName()+"="+param.getValue());
+			}
+		}
+		if (body.length()>0)
+			head.append("Content-Length: "+body.toString().getBytes(StandardCharsets.UTF_8).length+CRLF);
+		head.append(CRLF).append(body);
+		return head.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/* A SURT-like key: the host reversed, without www, followed by path and query */
+	static String urlKey(URL url) {
+		String[] host = url.getHost().toLowerCase(Locale.ROOT).replaceFirst("^www\\.", "").split("\\.");
+		StringBuilder key = new StringBuilder();
+		for (int i=host.length-1;i>=0;i--) {
+			key.append(host[i]);
+			if (i>0) key.append(",");
+		}
+		if (url.getPort()!=-1 && url.getPort()!=url.getDefaultPort())
+			key.append(":"+url.getPort());
+		key.append(")").append(url.getPath().isEmpty() ? "/" : url.getPath());
+		if (url.getQuery()!=null) key.append("?"+url.getQuery());
+		return key.toString().toLowerCase(Locale.ROOT);
+	}
+
+	private static String recordId() {
+		return "<urn:uuid:"+UUID.randomUUID()+">";
+	}
+
+	private static String format(String pattern, Date date) {
+		SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.ROOT);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return format.format(date);
+	}
+
+	private static byte[] sha1(byte[] data) {
+		try {
+			return MessageDigest.getInstance("SHA-1").digest(data);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static byte[] concat(byte[] a, byte[] b) {
+		byte[] c = new byte[a.length+b.length];
+		System.arraycopy(a, 0, c, 0, a.length);
+		System.arraycopy(b, 0, c, a.length, b.length);
+		return c;
+	}
+
+}
@@ -0,0 +1,180 @@
+package it.uniroma3.crawler.util;
+
+import static it.uniroma3.crawler.util.HtmlUtils.makeWebClient;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.typesafe.config.Config;
+
+import akka.actor.Extension;
+
+/**
+ * A bounded pool of reusable {@link WebClient} instances, one per node
+ * (see {@link WebClientPools}), keyed by JavaScript support.
+ * <br>
+ * Reusing a client keeps its connection pool, keep-alive sockets and
+ * JavaScript engine warm across requests. Cookies are cleared when a client
+ * is returned, so that each request starts from the same state as a new client.
+ * <br>
+ * A client is closed instead of being returned to the pool when its request 
+ * failed with an exception (health check), or once it has served the configured
+ * number of requests or reached the configured age (recycling).
+ * <br>
+ * The pool also holds the node {@link LightFetcher}, if enabled, 
+ * used in place of a WebClient for the pages that do not need JavaScript.
+ */
+public class WebClientPool implements Extension {
+	private final int maxIdle;
+	private final int maxUses;
+	private final long maxAge;
+	private final Deque<PooledClient> jsClients, plainClients;
+	private final LightFetcher light;
+	private boolean closed;
+
+	/**
+	 * A {@link WebClient} borrowed from the pool
+	 */
+	public static class PooledClient {
+		private final WebClient client;
+		private final boolean javascript;
+		private final long created;
+		private int uses;
+
+		private PooledClient(WebClient client, boolean javascript) {
+			this.client = client;
+			this.javascript = javascript;
+			this.created = System.currentTimeMillis();
+		}
+
+		public WebClient getClient() {
+			return client;
+		}
+	}
+
+	public WebClientPool(Config config) {
+		this((config.hasPath("crawler.repository.clientpool")) ? 
+				config.getInt("crawler.repository.clientpool") : 8,
+			(config.hasPath("crawler.repository.clientmaxuses")) ? 
+				config.getInt("crawler.repository.clientmaxuses") : 500,
+			(config.hasPath("crawler.repository.clientmaxage")) ? 
+				config.getLong("crawler.repository.clientmaxage") : 600000,
+			(!config.hasPath("crawler.repository.lightfetch") 
+					|| config.getBoolean("crawler.repository.lightfetch")) 
+				? new LightFetcher((config.hasPath("crawler.repository.lightconnections")) ? 
+						config.getInt("crawler.repository.lightconnections") : 32, 30000)
+				: null);
+	}
+
+	/**
+	 * Constructs a new WebClientPool.
+	 * @param maxIdle the max number of idle clients kept for each JavaScript mode
+	 * @param maxUses the number of requests after which a client is recycled
+	 * @param maxAge the age in milliseconds after which a client is recycled
+	 */
+	public WebClientPool(int maxIdle, int maxUses, long maxAge) {
+		this(maxIdle, maxUses, maxAge, null);
+	}
+
+	/**
+	 * Constructs a new WebClientPool with a {@link LightFetcher}.
+	 * @param maxIdle the max number of idle clients kept for each JavaScript mode
+	 * @param maxUses the number of requests after which a client is recycled
+	 * @param maxAge the age in milliseconds after which a client is recycled
+	 * @param light the LightFetcher, or null to always fetch with a WebClient
+	 */
+	public WebClientPool(int maxIdle, int maxUses, long maxAge, LightFetcher light) {
+		this.light = light;
+		this.maxIdle = maxIdle;
+		this.maxUses = maxUses;
+		this.maxAge = maxAge;
+		this.jsClients = new ArrayDeque<>();
+		this.plainClients = new ArrayDeque<>();
+	}
+
+	/**
+	 * Borrows a client from the pool, creating a new one if none is available.
+	 * @param javascript true to get a client with JavaScript support enabled
+	 * @return the borrowed client
+	 */
+	public PooledClient borrow(boolean javascript) {
+		synchronized (this) {
+			Deque<PooledClient> idle = idle(javascript);
+			while (!idle.isEmpty()) {
+				PooledClient pooled = idle.pollFirst();
+				if (!expired(pooled)) {
+					pooled.uses++;
+					return pooled;
+				}
+				pooled.client.close();
+			}
+		}
+		WebClient client = makeWebClient(javascript);
+		// a reused client would otherwise keep every page it loaded in its history
+		client.getOptions().setHistorySizeLimit(1);
+		client.getOptions().setHistoryPageCacheLimit(0);
+		PooledClient pooled = new PooledClient(client, javascript);
+		pooled.uses++;
+		return pooled;
+	}
+
+	/**
+	 * Returns a borrowed client to the pool.
+	 * @param pooled the borrowed client
+	 * @param healthy false if the client should not be reused
+	 */
+	public void release(PooledClient pooled, boolean healthy) {
+		if (healthy && !expired(pooled)) {
+			pooled.client.getCookieManager().clearCookies();
+			synchronized (this) {
+				Deque<PooledClient> idle = idle(pooled.javascript);
+				if (!closed && idle.size()<maxIdle) {
+					idle.addFirst(pooled); // the most recently used is the warmest
+					return;
+				}
+			}
+		}
+		pooled.client.close();
+	}
+
+	/**
+	 * Returns the fetcher of the pages that do not need JavaScript
+	 * @return the LightFetcher, or null if disabled
+	 */
+	public LightFetcher getLightFetcher() {
+		return light;
+	}
+
+	/**
+	 * Closes every idle client and the LightFetcher. 
+	 * Clients borrowed afterwards are not pooled anymore.
+	 */
+	public synchronized void close() {
+		if (light!=null) light.close();
+		closed = true;
+		jsClients.forEach(p -> p.client.close());
+		plainClients.forEach(p -> p.client.close());
+		jsClients.clear();
+		plainClients.clear();
+	}
+
+	/**
+	 * Returns the number of idle clients
+	 * @param javascript the JavaScript mode of the clients
+	 * @return the number of idle clients
+	 */
+	public synchronized int getIdleCount(boolean javascript) {
+		return idle(javascript).size();
+	}
+
+	private Deque<PooledClient> idle(boolean javascript) {
+		return (javascript) ? jsClients : plainClients;
+	}
+
+	private boolean expired(PooledClient pooled) {
+		return pooled.uses>=maxUses 
+				|| System.currentTimeMillis()-pooled.created>=maxAge;
+	}
+
+}
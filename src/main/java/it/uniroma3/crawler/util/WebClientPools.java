@@ -0,0 +1,25 @@
+package it.uniroma3.crawler.util;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.ExtensionIdProvider;
+
+public class WebClientPools extends AbstractExtensionId<WebClientPool> 
+						implements ExtensionIdProvider {
+	
+	public final static WebClientPools PoolProvider = new WebClientPools();
+
+	private WebClientPools() {}
+
+	@Override
+	public WebClientPools lookup() {
+		return PoolProvider;
+	}
+
+	@Override
+	public WebClientPool createExtension(ExtendedActorSystem system) {
+		WebClientPool pool = new WebClientPool(system.settings().config());
+		system.registerOnTermination(pool::close);
+		return pool;
+	}
+}
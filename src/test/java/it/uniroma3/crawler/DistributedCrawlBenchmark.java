@@ -0,0 +1,267 @@
+package it.uniroma3.crawler;
+
+import static it.uniroma3.crawler.util.Commands.START;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import com.romix.akka.serialization.kryo.KryoSerializer;
+import com.sun.net.httpserver.HttpServer;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Props;
+import it.uniroma3.crawler.actors.CrawlController;
+import it.uniroma3.crawler.util.CrawlMetrics;
+import it.uniroma3.crawler.util.FileUtils;
+import it.uniroma3.crawler.util.Metrics;
+import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
+
+/**
+ * Runs a fixed crawl of the bundled testsite over a master and N repository
+ * nodes, all started in this JVM on loopback ports, and reports the crawl
+ * throughput, the latency of each hop and the bytes serialized per page.
+ * <br>
+ * The testsite is served by an embedded HTTP server as many times as needed
+ * to reach the requested number of pages: every copy lives under its own path
+ * prefix and is linked from the root page. The master does no page work
+ * (its weight on the node ring is 0), so every page goes through a remote node.
+ * <br>
+ * Options are given as system properties:
+ * <ul>
+ * <li><code>nodes</code>: number of repository nodes (default 2)</li>
+ * <li><code>pages</code>: number of pages to crawl (default 1000)</li>
+ * <li><code>fetchers</code>, <code>inflight</code>, <code>pageworkers</code>,
+ * <code>pipeline</code>: the crawling settings of master.conf</li>
+ * <li><code>transport</code>: "artery" (default), "tcp" for the classic remoting, 
+ * or "local" to run every node in the master, without remoting, as a baseline</li>
+ * <li><code>port</code>: the port of the master, nodes use the following ones (default 25520)</li>
+ * </ul>
+ * Usage: <code>java -Dnodes=4 -Dpages=5000 it.uniroma3.crawler.DistributedCrawlBenchmark</code>
+ */
+public class DistributedCrawlBenchmark {
+	private static final String MODEL = "benchmark_target.csv";
+	private static final int PAGES_PER_COPY = 10;
+	private static final long IDLE_TIMEOUT = 30000;
+
+	/**
+	 * The Kryo serializer, counting the bytes of the serialized messages
+	 */
+	public static class CountingSerializer extends KryoSerializer {
+		static final LongAdder BYTES = new LongAdder();
+		static final LongAdder MESSAGES = new LongAdder();
+
+		public CountingSerializer(ExtendedActorSystem system) {
+			super(system);
+		}
+
+		@Override
+		public byte[] toBinary(Object obj) {
+			byte[] bytes = super.toBinary(obj);
+			BYTES.add(bytes.length);
+			MESSAGES.increment();
+			return bytes;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int nodes = Integer.getInteger("nodes", 2);
+		int pages = Integer.getInteger("pages", 1000);
+		int port = Integer.getInteger("port", 25520);
+		String transport = System.getProperty("transport", "artery");
+		boolean tcp = transport.equals("tcp");
+		boolean local = transport.equals("local");
+
+		HttpServer server = serveTestSite((pages+PAGES_PER_COPY-1)/PAGES_PER_COPY);
+		String site = "http://localhost:"+server.getAddress().getPort();
+		Path snapshots = Files.createTempDirectory("benchmark");
+		writeModel();
+		List<ActorSystem> systems = new ArrayList<>();
+		try {
+			for (int i=1;i<=nodes && !local;i++)
+				systems.add(ActorSystem.create("RepositorySystem"+i,
+						nodeConfig(port+i, tcp).withFallback(ConfigFactory.load("repository1"))));
+			Config masterConfig = masterConfig(site, nodes, pages, port, tcp, snapshots);
+			if (local)
+				masterConfig = ConfigFactory.parseString("akka.actor.provider = local")
+					.withFallback(masterConfig);
+			ActorSystem master = ActorSystem.create("CrawlSystem",
+					masterConfig.withFallback(ConfigFactory.load("master")));
+			systems.add(master);
+
+			CrawlMetrics metrics = Metrics.MetricsProvider.get(master);
+			ActorRef controller = master.actorOf(Props.create(CrawlController.class), "controller");
+			long start = System.currentTimeMillis();
+			controller.tell(START, ActorRef.noSender());
+			long end = awaitPages(metrics, pages);
+			report(metrics, nodes, end-start);
+		} finally {
+			for (ActorSystem system : systems)
+				Await.ready(system.terminate(), Duration.create(30, TimeUnit.SECONDS));
+			server.stop(0);
+			((ExecutorService) server.getExecutor()).shutdown();
+			cleanUp(site, snapshots);
+		}
+	}
+
+	/* returns the time of the last completed page */
+	private static long awaitPages(CrawlMetrics metrics, int pages) throws InterruptedException {
+		long count = 0, last = System.currentTimeMillis();
+		while (count<pages && System.currentTimeMillis()-last<IDLE_TIMEOUT) {
+			Thread.sleep(50);
+			long current = metrics.get(CrawlMetrics.PAGE).getCount();
+			if (current>count) {
+				count = current;
+				last = System.currentTimeMillis();
+			}
+		}
+		return last;
+	}
+
+	private static void report(CrawlMetrics metrics, int nodes, long millis) {
+		long pages = metrics.get(CrawlMetrics.PAGE).getCount();
+		System.out.println("Nodes: "+nodes+", pages: "+pages+" in "+millis+" ms");
+		System.out.printf("Throughput: %.1f pages/s%n", pages*1000.0/Math.max(1, millis));
+		for (Map.Entry<String, CrawlMetrics.Hop> hop : metrics.getHops().entrySet()) {
+			if (!hop.getKey().equals(CrawlMetrics.PAGE))
+				System.out.println("Hop "+hop.getKey()+": "+hop.getValue());
+		}
+		long bytes = CountingSerializer.BYTES.sum();
+		long messages = CountingSerializer.MESSAGES.sum();
+		System.out.printf("Serialized: %d messages, %d bytes, %.0f bytes/page%n",
+				messages, bytes, (double) bytes/Math.max(1, pages));
+	}
+
+	private static Config nodeConfig(int port, boolean tcp) {
+		String remote = (tcp)
+				? "akka.remote.artery.enabled = off\n"
+				+ "akka.remote.netty.tcp.hostname = \"127.0.0.1\"\n"
+				+ "akka.remote.netty.tcp.port = "+port+"\n"
+				: "akka.remote.artery.canonical.hostname = \"127.0.0.1\"\n"
+				+ "akka.remote.artery.canonical.port = "+port+"\n";
+		return ConfigFactory.parseString(remote
+				+ "akka.loglevel = \"WARNING\"\n"
+				+ "akka.actor.serializers.kryo = \""+CountingSerializer.class.getName()+"\"\n");
+	}
+
+	private static Config masterConfig(String site, int nodes, int pages, int port,
+			boolean tcp, Path snapshots) {
+		String protocol = (tcp) ? "akka.tcp" : "akka";
+		StringBuilder conf = new StringBuilder();
+		conf.append("crawler.modeler { \""+site+"\" { static.file = \""+MODEL+"\", "
+				+ "crawl = true, wait = 0, randompause = 0 } }\n");
+		conf.append("crawler.crawling.pages = "+pages+"\n");
+		conf.append("crawler.crawling.snapshot = 0\n");
+		for (String key : new String[] {"fetchers", "inflight", "pageworkers", "pipeline"}) {
+			if (System.getProperty(key)!=null)
+				conf.append("crawler.crawling."+key+" = \""+System.getProperty(key)+"\"\n");
+		}
+		// the master only coordinates
+		conf.append("nodes.repository0 { host = \"127.0.0.1\", port = "+port+", "
+				+ "system = \"CrawlSystem\", protocol = \""+protocol+"\", weight = 0 }\n");
+		for (int i=1;i<=nodes;i++)
+			conf.append("nodes.repository"+i+" { host = \"127.0.0.1\", port = "+(port+i)+", "
+					+ "system = \"RepositorySystem"+i+"\", protocol = \""+protocol+"\" }\n");
+		// the frontier journal is kept in memory: only the crawl is measured
+		conf.append("akka.persistence.journal.plugin = \"akka.persistence.journal.inmem\"\n");
+		conf.append("akka.persistence.snapshot-store.local.dir = \""+snapshots+"\"\n");
+		return ConfigFactory.parseString(conf.toString()).withFallback(nodeConfig(port, tcp));
+	}
+
+	/**
+	 * Serves the given number of copies of the testsite on an ephemeral port.
+	 * The root page links the homepage of every copy.
+	 */
+	private static HttpServer serveTestSite(int copies) throws IOException {
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		StringBuilder root = new StringBuilder("<html><body><ul id=\"copies\">");
+		for (int i=0;i<copies;i++)
+			root.append("<li><a href=\"/s"+i+"/index.html\">Copy "+i+"</a></li>");
+		byte[] rootPage = root.append("</ul></body></html>").toString().getBytes(StandardCharsets.UTF_8);
+
+		server.createContext("/", exchange -> {
+			String path = exchange.getRequestURI().getPath();
+			byte[] body = null;
+			if (path.equals("/"))
+				body = rootPage;
+			else if (path.matches("/s\\d+/.+\\.html")) {
+				String prefix = path.substring(0, path.indexOf('/', 1));
+				Path file = Paths.get("testsite", path.substring(prefix.length()));
+				if (Files.isRegularFile(file))
+					body = new String(Files.readAllBytes(file), StandardCharsets.UTF_8)
+						.replace("href=\"/", "href=\""+prefix+"/").getBytes(StandardCharsets.UTF_8);
+			}
+			if (body!=null) {
+				exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			}
+			else {
+				exchange.sendResponseHeaders(404, -1);
+				exchange.close();
+			}
+		});
+		server.setExecutor(Executors.newFixedThreadPool(8));
+		server.start();
+		return server;
+	}
+
+	/* the model of the copies of the testsite */
+	private static void writeModel() throws IOException {
+		String model = String.join("\n",
+			"root\tlink\t//ul[@id='copies']//a\thomepage\tlist",
+			"homepage\tlink\t//ul[@id='menu']//a[contains(@href,'directory')]\tdirectory\tlist",
+			"homepage\tlink\t//ul[@id='menu']//a[not(contains(@href,'directory'))]\tinfo\tlist",
+			"directory\tlink\t//ul/li/a[contains(@href,'detail')]\tdetail\tlist",
+			"directory\tlink\t//a[@id='page']\tdirectory\tsingleton",
+			"detail\tlink\t//div[@class='back']//a\tdirectory\tlist",
+			"detail\tstring\t//h1/text()\ttitle",
+			"info\tstring\t//h1/text()\ttitle", "");
+		Files.write(Paths.get("src/main/resources/targets", MODEL),
+				model.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/* deletes the model, the snapshots and every file written for the site */
+	private static void cleanUp(String site, Path snapshots) throws IOException {
+		String name = FileUtils.normalizeURL(site);
+		List<Path> files = new ArrayList<>();
+		files.add(snapshots);
+		files.add(Paths.get("src/main/resources/targets", MODEL));
+		for (String dir : new String[] {"html", "temp", "src/main/resources/storage",
+				"src/main/resources/repository"}) {
+			if (!Files.isDirectory(Paths.get(dir))) continue;
+			try (Stream<Path> list = Files.list(Paths.get(dir))) {
+				list.filter(p -> p.getFileName().toString().contains(name)).forEach(files::add);
+			}
+		}
+		for (Path file : files) {
+			if (!Files.exists(file)) continue;
+			try (Stream<Path> walk = Files.walk(file)) {
+				walk.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+			}
+		}
+	}
+
+}
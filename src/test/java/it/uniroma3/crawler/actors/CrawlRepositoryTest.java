@@ -9,9 +9,11 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -20,6 +22,7 @@ import org.junit.Test;
 
 import com.typesafe.config.ConfigFactory;
 
+import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Props;
 import static akka.pattern.PatternsCS.ask;
@@ -27,6 +30,8 @@ import akka.testkit.javadsl.TestKit;
 import akka.testkit.TestActorRef;
 import it.uniroma3.crawler.messages.*;
 import it.uniroma3.crawler.model.PageClass;
+import it.uniroma3.crawler.util.FileUtils;
+import scala.concurrent.duration.Duration;
 
 public class CrawlRepositoryTest {
 	private static ActorSystem system;
@@ -241,5 +246,34 @@ public class CrawlRepositoryTest {
 		
 		new File(file).delete();
 	}
+	
+	@Test
+	public void testProcess_twoSites() throws Exception {
+		// unreachable sites: each pipeline answers with a failed fetch
+		String site1 = "http://127.0.0.1:1";
+		String site2 = "http://localhost:1";
+		
+		final TestActorRef<CrawlRepository> repo = 
+				TestActorRef.create(system, Props.create(CrawlRepository.class), "repoG");
+		final TestKit probe1 = new TestKit(system);
+		final TestKit probe2 = new TestKit(system);
+		
+		// same fetcher id and slot in the frontiers of both sites
+		repo.tell(new ProcessMsg(new FetchMsg(site1,"home",site1,0,js), 
+				new ExtractMsg(site1, new ArrayList<>(), new ArrayList<>(), new HashMap<>()), 0), 
+				probe1.getRef());
+		repo.tell(new ProcessMsg(new FetchMsg(site2,"home",site2,0,js), 
+				new ExtractMsg(site2, new ArrayList<>(), new ArrayList<>(), new HashMap<>()), 0), 
+				probe2.getRef());
+		
+		probe1.expectMsgClass(Duration.create(30, TimeUnit.SECONDS), ProcessedMsg.class);
+		probe2.expectMsgClass(Duration.create(30, TimeUnit.SECONDS), ProcessedMsg.class);
+		ActorRef pipeline1 = probe1.getLastSender();
+		ActorRef pipeline2 = probe2.getLastSender();
+		
+		assertNotEquals(pipeline1, pipeline2);
+		assertTrue(pipeline1.path().name().contains(FileUtils.normalizeURL(site1)));
+		assertTrue(pipeline2.path().name().contains(FileUtils.normalizeURL(site2)));
+	}
 
 }
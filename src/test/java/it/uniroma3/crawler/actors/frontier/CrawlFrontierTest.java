@@ -0,0 +1,90 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import static it.uniroma3.crawler.util.Commands.NEXT;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.typesafe.config.ConfigFactory;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.PoisonPill;
+import akka.testkit.javadsl.TestKit;
+import it.uniroma3.crawler.messages.StoreURLMsg;
+import it.uniroma3.crawler.model.CrawlURL;
+import it.uniroma3.crawler.model.PageClass;
+import it.uniroma3.crawler.settings.CrawlerSettings.SeedConfig;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+public class CrawlFrontierTest {
+	private static final String SITE = "http://frontiertest";
+	private static final FiniteDuration EXPIRY = Duration.create(600, TimeUnit.MILLISECONDS);
+
+	private ActorSystem system;
+	private Path snapshots;
+	private PageClass root;
+
+	@Before
+	public void setUp() throws IOException {
+		snapshots = Files.createTempDirectory("snapshots");
+		system = ActorSystem.create("frontierTest", ConfigFactory.parseString(
+				"akka.actor.provider = local\n"
+				+ "akka.persistence.journal.plugin = \"akka.persistence.journal.inmem\"\n"
+				+ "akka.persistence.snapshot-store.local.dir = \""+snapshots+"\"\n"
+				+ "crawler.crawling.lease = 200\n"
+				+ "crawler.crawling.snapshot = 0\n")
+				.withFallback(ConfigFactory.load()));
+		root = new PageClass("root", new SeedConfig(SITE, null, null, 0, false, 0, 0, 1, true, false));
+		PageClass detail = new PageClass("detail", SITE);
+		root.addPageClassLink("//a", detail);
+		root.setHierarchy();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		TestKit.shutdownActorSystem(system);
+		try (Stream<Path> walk = Files.walk(snapshots)) {
+			walk.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+		try (Stream<Path> list = Files.list(Paths.get("src/main/resources/storage"))) {
+			list.filter(p -> p.getFileName().toString().contains("frontiertest"))
+				.map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public void testRecovery_afterExpiry() {
+		TestKit fetcher = new TestKit(system);
+		ActorRef frontier = system.actorOf(CrawlFrontier.props(0, 100, 10, root), "frontier");
+		frontier.tell(new StoreURLMsg(SITE+"/a", "detail"), ActorRef.noSender());
+
+		frontier.tell(NEXT, fetcher.getRef());
+		CrawlURL seed = fetcher.expectMsgClass(CrawlURL.class);
+		fetcher.expectNoMsg(EXPIRY); // re-issued once
+		frontier.tell(NEXT, fetcher.getRef());
+		assertEquals(seed, fetcher.expectMsgClass(CrawlURL.class));
+		fetcher.expectNoMsg(EXPIRY); // given up
+
+		fetcher.watch(frontier);
+		frontier.tell(PoisonPill.getInstance(), ActorRef.noSender());
+		fetcher.expectTerminated(frontier);
+		frontier = system.actorOf(CrawlFrontier.props(0, 100, 10, root), "frontier");
+
+		frontier.tell(NEXT, fetcher.getRef());
+		assertEquals(SITE+"/a", fetcher.expectMsgClass(CrawlURL.class).getStringUrl());
+	}
+
+}
@@ -3,6 +3,10 @@ package it.uniroma3.crawler.actors.frontier;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Before;
@@ -212,5 +216,153 @@ public class CrawlQueueTest {
 		assertEquals(curl3, queue.next());
 		assertEquals(curl10, queue.next());
 	}
+	
+	@Test
+	public void testNext_retrieveFromMultipleSegments() {
+		pclass.setHierarchy();
+		queue = new CrawlQueue(2, 3, pclass);
+		queue.next(); // remove seed
+		
+		for (int i=0;i<20;i++)
+			queue.add(getCrawlUrl("http://localhost/"+(char)('a'+i),pclass));
+		assertEquals(20, queue.size());
+		
+		int count = 0;
+		while (!queue.isEmpty()) {
+			assertNotNull(queue.next());
+			count++;
+		}
+		assertEquals(20, count);
+		assertNull(queue.next());
+		assertFalse(Files.exists(Paths.get(storage)));
+		
+		assertTrue(queue.add(getCrawlUrl("http://localhost/z",pclass)));
+		assertEquals(getCrawlUrl("http://localhost/z",pclass), queue.next());
+	}
+	
+	@Test
+	public void testNext_sortedStorage() {
+		pclass.setHierarchy();
+		queue = new CrawlQueue(2, pclass, QueueStorage.create(QueueStorage.SORTED, 2, pclass));
+		queue.next(); // remove seed
+		
+		CrawlURL curl1 = getCrawlUrl("http://localhost/1",pclass3);
+		CrawlURL curl2 = getCrawlUrl("http://localhost/2",pclass3);
+		CrawlURL curl3 = getCrawlUrl("http://localhost/3",pclass2);
+		CrawlURL curl4 = getCrawlUrl("http://localhost/4",pclass2);
+		CrawlURL curl5 = getCrawlUrl("http://localhost/5",pclass);
+		CrawlURL curl6 = getCrawlUrl("http://localhost/6",pclass3);
+		CrawlURL curl7 = getCrawlUrl("http://localhost/7",pclass);
+		
+		queue.add(curl1);
+		queue.add(curl2);
+		queue.add(curl3);
+		queue.add(curl4);
+		queue.add(curl5);
+		queue.add(curl6);
+		
+		assertEquals(curl5, queue.next());
+		assertEquals(curl3, queue.next());
+		queue.add(curl7);
+		assertEquals(curl7, queue.next());
+		assertEquals(curl4, queue.next());
+		assertEquals(curl1, queue.next());
+		assertEquals(curl2, queue.next());
+		assertEquals(curl6, queue.next());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testNext_sortedStorageCompacted() {
+		pclass.setHierarchy();
+		queue = new CrawlQueue(1, pclass, QueueStorage.create(QueueStorage.SORTED, 2, pclass));
+		queue.next(); // remove seed
+		int n = 4*SortedQueueStorage.MAX_RUNS; // twice MAX_RUNS runs of 2 elements
+		for (int i=0;i<n;i++)
+			queue.add(getCrawlUrl(String.format("http://localhost/%04d", (i*7919)%n),pclass2));
+
+		List<CrawlURL> expected = new ArrayList<>();
+		for (int i=0;i<n;i++)
+			expected.add(getCrawlUrl(String.format("http://localhost/%04d", i),pclass2));
+		List<CrawlURL> actual = new ArrayList<>();
+		while (!queue.isEmpty())
+			actual.add(queue.next());
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testRestore_segmentedStorage() throws IOException {
+		pclass.setHierarchy();
+		queue = new CrawlQueue(2, 3, pclass);
+		assertRestore(new CrawlQueue(2, 3, pclass));
+	}
+	
+	@Test
+	public void testRestore_sortedStorage() throws IOException {
+		pclass.setHierarchy();
+		queue = new CrawlQueue(2, pclass, QueueStorage.create(QueueStorage.SORTED, 3, pclass));
+		assertRestore(new CrawlQueue(2, pclass, QueueStorage.create(QueueStorage.SORTED, 3, pclass)));
+	}
+	
+	@Test
+	public void testRestore_tailSegmentOffset() throws IOException {
+		pclass.setHierarchy();
+		queue = new CrawlQueue(1, 100, pclass);
+		queue.next(); // remove seed
+		CrawlURL curl1 = getCrawlUrl("http://localhost/a",pclass2);
+		CrawlURL curl2 = getCrawlUrl("http://localhost/b",pclass2);
+		queue.add(curl1);
+		queue.add(curl2); // stored on file
+		CrawlQueue.Snapshot snapshot = queue.snapshot();
+		queue.add(getCrawlUrl("http://localhost/c",pclass2)); // after the snapshot
+		assertFalse(Files.exists(Paths.get(storage+".1"))); // the tail segment is not sealed
+
+		CrawlQueue restored = new CrawlQueue(1, 100, pclass);
+		restored.restore(snapshot);
+		assertEquals(curl1, restored.next());
+		assertEquals(curl2, restored.next());
+		assertTrue(restored.isEmpty());
+	}
+
+	@Test
+	public void testRestore_visitedLog() throws IOException {
+		pclass.setHierarchy();
+		queue = new CrawlQueue(10000, pclass);
+		for (int i=0;i<5000;i++)
+			queue.add(getCrawlUrl("http://localhost/"+i, pclass2));
+		CrawlQueue.Snapshot snapshot = queue.snapshot();
+		queue.add(getCrawlUrl("http://localhost/after", pclass2));
+		queue.snapshot(); // logged after the first snapshot
+
+		CrawlQueue restored = new CrawlQueue(10000, pclass);
+		restored.restore(snapshot);
+		assertEquals(5001, restored.getVisitedSet().size());
+		assertFalse(restored.add(getCrawlUrl("http://localhost/4999", pclass2)));
+		assertTrue(restored.add(getCrawlUrl("http://localhost/after", pclass2)));
+	}
+
+	private void assertRestore(CrawlQueue restored) throws IOException {
+		queue.next(); // remove seed
+		for (int i=0;i<10;i++)
+			queue.add(getCrawlUrl("http://localhost/"+(char)('a'+i),(i%2==0) ? pclass2 : pclass3));
+		queue.next();
+		queue.next();
+		queue.next();
+		
+		CrawlQueue.Snapshot snapshot = queue.snapshot();
+		List<CrawlURL> expected = new ArrayList<>();
+		while (!queue.isEmpty())
+			expected.add(queue.next());
+		queue.add(getCrawlUrl("http://localhost/z",pclass)); // after the snapshot
+		queue.releaseStorage();
+		
+		restored.restore(snapshot);
+		assertEquals(expected.size(), restored.size());
+		assertFalse(restored.add(getCrawlUrl("http://localhost/a",pclass2)));
+		List<CrawlURL> actual = new ArrayList<>();
+		while (!restored.isEmpty())
+			actual.add(restored.next());
+		assertEquals(expected, actual);
+	}
 
 }
@@ -0,0 +1,38 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class CrawlRateControllerTest {
+
+	@Test
+	public void testUpdate_fastResponsesRaiseTheRate() {
+		CrawlRateController controller = new CrawlRateController(2000, 250, 30000, 1000);
+		assertEquals(2000, controller.getWait());
+		for (int i=0; i<10; i++)
+			controller.update(100, true);
+		assertEquals(1000, controller.getWait()); // 0.5 + 10*0.05 req/s
+	}
+
+	@Test
+	public void testUpdate_failuresAndSlowResponsesHalveTheRate() {
+		CrawlRateController controller = new CrawlRateController(2000, 250, 30000, 1000);
+		controller.update(100, false);
+		assertEquals(4000, controller.getWait());
+		controller.update(5000, true);
+		assertEquals(8000, controller.getWait());
+	}
+
+	@Test
+	public void testUpdate_waitIsBounded() {
+		CrawlRateController controller = new CrawlRateController(2000, 250, 30000, 1000);
+		for (int i=0; i<1000; i++)
+			controller.update(100, true);
+		assertEquals(250, controller.getWait());
+		for (int i=0; i<100; i++)
+			controller.update(100, false);
+		assertEquals(30000, controller.getWait());
+	}
+
+}
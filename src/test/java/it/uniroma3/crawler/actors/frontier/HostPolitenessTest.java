@@ -0,0 +1,44 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import it.uniroma3.crawler.model.PageClass;
+
+public class HostPolitenessTest {
+	private HostPoliteness politeness;
+	private PageClass pclass;
+
+	@Before
+	public void setUp() {
+		politeness = new HostPoliteness();
+		pclass = new PageClass("class1", "http://localhost");
+		pclass.setWaitTime(1000);
+		pclass.setRandomPause(0);
+	}
+
+	@Test
+	public void testDelay_firstRequestIsAllowed() {
+		assertEquals(0, politeness.delay(5000));
+	}
+
+	@Test
+	public void testAcquire_requestsArePaced() {
+		assertEquals(6000, politeness.acquire(pclass, 5000));
+		assertEquals(1000, politeness.delay(5000));
+		assertEquals(400, politeness.delay(5600));
+		assertEquals(0, politeness.delay(6000));
+		assertEquals(7000, politeness.acquire(pclass, 6000));
+		assertEquals(9500, politeness.acquire(pclass, 8500));
+	}
+
+	@Test
+	public void testAcquire_randomPause() {
+		pclass.setRandomPause(500);
+		long next = politeness.acquire(pclass, 0);
+		assertTrue(next>=1000 && next<1500);
+	}
+
+}
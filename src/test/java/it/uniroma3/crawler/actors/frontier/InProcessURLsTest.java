@@ -0,0 +1,74 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import static it.uniroma3.crawler.factories.CrawlURLFactory.getCrawlUrl;
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import it.uniroma3.crawler.model.CrawlURL;
+import it.uniroma3.crawler.model.PageClass;
+
+public class InProcessURLsTest {
+	private InProcessURLs inProcess;
+	private CrawlURL curl1, curl2, curl3;
+
+	@Before
+	public void setUp() {
+		PageClass pclass = new PageClass("class1", "http://localhost");
+		inProcess = new InProcessURLs();
+		curl1 = getCrawlUrl("http://localhost/1", pclass);
+		curl2 = getCrawlUrl("http://localhost/2", pclass);
+		curl3 = getCrawlUrl("http://localhost/3", pclass);
+	}
+
+	@Test
+	public void testComplete() {
+		inProcess.add(1, curl1, null, 100);
+		inProcess.add(2, curl2, null, 200);
+		assertEquals(curl2, inProcess.complete(2));
+		assertNull(inProcess.complete(2));
+		assertEquals(1, inProcess.size());
+	}
+
+	@Test
+	public void testExpire() {
+		inProcess.add(1, curl1, null, 100);
+		inProcess.add(2, curl2, null, 200);
+		inProcess.add(3, curl3, null, 300);
+
+		List<InProcessURLs.Lease> expired = inProcess.expire(200);
+		assertEquals(2, expired.size());
+		assertEquals(curl1, expired.get(0).getURL());
+		assertEquals(curl2, expired.get(1).getURL());
+		assertEquals(0, expired.get(0).getAttempts());
+		assertEquals(1, inProcess.size());
+	}
+
+	@Test
+	public void testExpire_attemptsAreCounted() {
+		inProcess.add(1, curl1, null, 100);
+		inProcess.expire(100);
+		inProcess.add(1, curl1, null, 200);
+		assertEquals(1, inProcess.expire(200).get(0).getAttempts());
+
+		inProcess.add(1, curl1, null, 300);
+		inProcess.complete(1);
+		inProcess.add(1, curl1, null, 400);
+		assertEquals(0, inProcess.expire(400).get(0).getAttempts());
+	}
+
+	@Test
+	public void testTakeBack() {
+		inProcess.add(1, curl1, null, 100);
+		inProcess.add(2, curl2, null, 200);
+		assertEquals(curl1, inProcess.takeBack(1).getURL());
+		assertNull(inProcess.takeBack(1));
+		assertEquals(1, inProcess.size());
+		inProcess.add(1, curl1, null, 300);
+		assertEquals(1, inProcess.expire(300).get(1).getAttempts());
+	}
+
+}
@@ -0,0 +1,123 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class VisitedSetTest {
+	private String file = "src/main/resources/storage/visited_test.bin";
+	
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(Paths.get(file));
+	}
+
+	@Test
+	public void testAdd_memory() {
+		checkAddAndGrow(new LongVisitedSet(4));
+	}
+	
+	@Test
+	public void testAdd_mapped() throws IOException {
+		checkAddAndGrow(new MappedVisitedSet(file, 4));
+	}
+	
+	@Test
+	public void testAdd_bloomFiltered() {
+		CountingVisitedSet exact = new CountingVisitedSet(new LongVisitedSet(4));
+		BloomVisitedSet visited = new BloomVisitedSet(exact, 1000, 0.01, 1024);
+		checkAddAndGrow(visited);
+		assertEquals(10000, visited.getMisses()+visited.getFalsePositives());
+		assertEquals(10000+visited.getFalsePositives(), visited.getHits());
+		assertEquals(visited.getMisses(), exact.inserts);
+		assertEquals(visited.getHits(), exact.adds); // misses do not look up the exact set
+	}
+	
+	@Test
+	public void testInsert_memory() {
+		checkInsert(new LongVisitedSet(4));
+	}
+	
+	@Test
+	public void testInsert_mapped() throws IOException {
+		checkInsert(new MappedVisitedSet(file, 4));
+	}
+	
+	@Test
+	public void testAdd_zeroFingerprint() {
+		VisitedSet visited = new LongVisitedSet(4);
+		assertFalse(visited.contains(0));
+		assertTrue(visited.add(0));
+		assertTrue(visited.contains(0));
+		assertFalse(visited.add(0));
+	}
+	
+	private void checkInsert(VisitedSet visited) {
+		Random random = new Random(42);
+		long[] fps = new long[1000];
+		for (int i=0;i<fps.length;i++) {
+			fps[i] = random.nextLong();
+			visited.insert(fps[i]);
+		}
+		visited.insert(0);
+		assertEquals(fps.length+1, visited.size());
+		assertFalse(visited.add(0));
+		for (long fp : fps)
+			assertFalse(visited.add(fp));
+	}
+	
+	private void checkAddAndGrow(VisitedSet visited) {
+		Random random = new Random(42);
+		long[] fps = new long[10000];
+		for (int i=0;i<fps.length;i++) {
+			fps[i] = random.nextLong();
+			assertTrue(visited.add(fps[i]));
+		}
+		assertEquals(fps.length, visited.size());
+		for (long fp : fps) {
+			assertTrue(visited.contains(fp));
+			assertFalse(visited.add(fp));
+		}
+		assertFalse(visited.contains(fps[0]+1));
+		assertEquals(fps.length, visited.size());
+	}
+	
+	/* counts the lookups and the inserts of the given set */
+	private static class CountingVisitedSet implements VisitedSet {
+		private final VisitedSet set;
+		private long adds, inserts;
+		
+		private CountingVisitedSet(VisitedSet set) {
+			this.set = set;
+		}
+		
+		public boolean add(long fingerprint) {
+			adds++;
+			return set.add(fingerprint);
+		}
+		
+		public void insert(long fingerprint) {
+			inserts++;
+			set.insert(fingerprint);
+		}
+		
+		public boolean contains(long fingerprint) {
+			return set.contains(fingerprint);
+		}
+		
+		public long size() {
+			return set.size();
+		}
+		
+		public long[] toArray() {
+			return set.toArray();
+		}
+	}
+
+}
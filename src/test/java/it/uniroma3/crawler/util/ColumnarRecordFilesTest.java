@@ -0,0 +1,133 @@
+package it.uniroma3.crawler.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import it.uniroma3.crawler.model.PageClass;
+
+public class ColumnarRecordFilesTest {
+	private Path directory, file;
+	private PageClass pclass;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Paths.get("src/main/resources/storage/columnar");
+		file = directory.resolve("detail"+ColumnarRecordFiles.EXTENSION);
+		pclass = new PageClass("detail", "http://localhost");
+		pclass.addData("//h1", "string", "title");
+		pclass.addData("//span", "string", "category");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		if (!Files.exists(directory)) return;
+		try (Stream<Path> walk = Files.walk(directory)) {
+			walk.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public void testForEach_selectedColumns() throws IOException {
+		RecordSink files = new ColumnarRecordFiles(site -> directory.toString(), 4);
+		for (int i=0;i<10;i++)
+			files.write(pclass, "http://localhost/"+i, new String[] {"title "+i, "cat"+(i%2)});
+		files.close();
+
+		ColumnarRecordReader reader = new ColumnarRecordReader(file);
+		assertArrayEquals(new String[] {"URL", "title", "category"}, reader.getNames());
+		assertArrayEquals(new String[] {"url", "string", "string"}, reader.getTypes());
+		List<String> rows = new ArrayList<>();
+		reader.forEach(new String[] {"category", "URL"}, row -> rows.add(row[0]+" "+row[1]));
+		assertEquals(10, rows.size());
+		assertEquals("cat0 http://localhost/0", rows.get(0));
+		assertEquals("cat1 http://localhost/9", rows.get(9));
+	}
+
+	@Test
+	public void testWrite_multipleValues() throws IOException {
+		PageClass list = new PageClass("list", "http://localhost");
+		list.addData("//li", "string", "item");
+		RecordSink files = new ColumnarRecordFiles(site -> directory.toString(), 100);
+		files.write(list, "http://localhost/list", new String[] {"a\tb\tc"});
+		files.close();
+
+		List<String> items = new ArrayList<>();
+		new ColumnarRecordReader(directory.resolve("list"+ColumnarRecordFiles.EXTENSION))
+			.forEach(new String[] {"item"}, row -> items.add(row[0]));
+		assertEquals(Arrays.asList("a", "b", "c"), items);
+	}
+
+	@Test
+	public void testWrite_append() throws IOException {
+		RecordSink files = new ColumnarRecordFiles(site -> directory.toString(), 100);
+		files.write(pclass, "http://localhost/1", new String[] {"one", "x"});
+		files.flush();
+		assertEquals(0, count()); // incomplete row group kept in memory
+		files.close();
+		files = new ColumnarRecordFiles(site -> directory.toString(), 100);
+		files.write(pclass, "http://localhost/2", new String[] {"two", null});
+		files.close();
+
+		List<String> titles = new ArrayList<>();
+		new ColumnarRecordReader(file).forEach(new String[] {"title", "category"},
+				row -> titles.add(row[0]+row[1]));
+		assertEquals(Arrays.asList("onex", "two"), titles);
+	}
+
+	@Test
+	public void testEncode_integers() {
+		List<String> values = Arrays.asList("12", "-3", "0", String.valueOf(Long.MAX_VALUE), 
+				String.valueOf(Long.MIN_VALUE));
+		assertDecoded(ColumnarRecordFiles.INTEGER, values, "string");
+		// not read back unchanged as integers
+		assertDecoded(ColumnarRecordFiles.PLAIN, Arrays.asList("12", "007", "-0"), "string");
+		assertDecoded(ColumnarRecordFiles.PLAIN, Arrays.asList("12", "", "3"), "string");
+	}
+
+	@Test
+	public void testEncode_urls() {
+		List<String> values = Arrays.asList("http://localhost/a/1", "http://localhost/a/2", 
+				"http://localhost/b", "http://localhost/è", "http://other");
+		assertDecoded(ColumnarRecordFiles.PREFIX, values, "url");
+		assertDecoded(ColumnarRecordFiles.PLAIN, values, "string");
+	}
+
+	@Test(expected=IOException.class)
+	public void testWrite_schemaMismatch() throws IOException {
+		RecordSink files = new ColumnarRecordFiles(site -> directory.toString(), 100);
+		files.write(pclass, "http://localhost/1", new String[] {"one", "x"});
+		files.close();
+		pclass.addData("//p", "string", "description");
+		new ColumnarRecordFiles(site -> directory.toString(), 100)
+			.write(pclass, "http://localhost/2", new String[] {"two", "y", "z"});
+	}
+
+	private void assertDecoded(byte encoding, List<String> values, String type) {
+		ByteArrayOutputStream raw = new ByteArrayOutputStream();
+		assertEquals(encoding, ColumnarRecordFiles.encode(values, type, raw));
+		assertEquals(values, Arrays.asList(
+				ColumnarRecordReader.decode(encoding, raw.toByteArray(), values.size())));
+	}
+
+	private int count() throws IOException {
+		int[] rows = new int[1];
+		new ColumnarRecordReader(file).forEach(new String[] {"URL"}, row -> rows[0]++);
+		return rows[0];
+	}
+
+}
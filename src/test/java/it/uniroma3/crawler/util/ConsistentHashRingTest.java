@@ -0,0 +1,83 @@
+package it.uniroma3.crawler.util;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConsistentHashRingTest {
+	private static final int KEYS = 20000;
+	private ConsistentHashRing<String> ring;
+
+	@Before
+	public void setUp() {
+		ring = new ConsistentHashRing<>(100);
+	}
+
+	@Test
+	public void testNodeFor_emptyRing() {
+		assertNull(ring.nodeFor("http://localhost/1"));
+	}
+
+	@Test
+	public void testNodeFor_keysAreSpreadEvenly() {
+		ring.add("node0");
+		ring.add("node1");
+		ring.add("node2");
+		Map<String, Integer> load = load();
+		for (String node : ring.getNodes())
+			assertEquals(KEYS/3, load.get(node), KEYS/3*0.2);
+	}
+
+	@Test
+	public void testNodeFor_keysAreSpreadByWeight() {
+		ring.add("node0", 1);
+		ring.add("node1", 3);
+		Map<String, Integer> load = load();
+		assertEquals(KEYS/4, load.get("node0"), KEYS/4*0.2);
+		assertEquals(KEYS*3/4, load.get("node1"), KEYS*3/4*0.2);
+	}
+
+	@Test
+	public void testAdd_onlyKeysOfNewNodeMove() {
+		ring.add("node0");
+		ring.add("node1");
+		ring.add("node2");
+		Map<String, String> before = new HashMap<>();
+		for (int i=0;i<KEYS;i++) before.put(key(i), ring.nodeFor(key(i)));
+		ring.add("node3");
+		int moved = 0;
+		for (int i=0;i<KEYS;i++) {
+			String node = ring.nodeFor(key(i));
+			if (!node.equals(before.get(key(i)))) {
+				assertEquals("node3", node);
+				moved++;
+			}
+		}
+		assertEquals(KEYS/4, moved, KEYS/4*0.2);
+	}
+
+	@Test
+	public void testRemove() {
+		ring.add("node0");
+		ring.add("node1");
+		ring.remove("node1");
+		assertEquals(KEYS, (int) load().get("node0"));
+		assertEquals(0, ring.getWeight("node1"));
+	}
+
+	private Map<String, Integer> load() {
+		Map<String, Integer> load = new HashMap<>();
+		for (int i=0;i<KEYS;i++)
+			load.merge(ring.nodeFor(key(i)), 1, Integer::sum);
+		return load;
+	}
+
+	private static String key(int i) {
+		return "http://localhost/page"+i+".html";
+	}
+
+}
@@ -0,0 +1,101 @@
+package it.uniroma3.crawler.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * JMH benchmark of the fetch paths of a non-JavaScript page of the bundled
+ * <i>testsite</i>, served by a local HTTP server: 
+ * a new HtmlUnit WebClient per page (former CrawlPage behavior), 
+ * a pooled WebClient and the {@link LightFetcher}.
+ * <br>
+ * Pages/sec are reported as throughput, memory per page as 
+ * <i>gc.alloc.rate.norm</i> (bytes allocated per fetched page).
+ * <br>
+ * Run with: <i>mvn test-compile exec:java -Dexec.classpathScope=test 
+ * -Dexec.mainClass=it.uniroma3.crawler.util.FetchBenchmark</i>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FetchBenchmark {
+	private HttpServer server;
+	private String base;
+	private WebClientPool pool;
+	private LightFetcher light;
+
+	@Param({"/index.html", "/directory1.html", "/table.html"})
+	public String page;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		server = LightFetcherTest.serveTestSite();
+		base = "http://localhost:"+server.getAddress().getPort();
+		pool = new WebClientPool(8, Integer.MAX_VALUE, Long.MAX_VALUE);
+		light = new LightFetcher(8, 5000);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		pool.close();
+		light.close();
+		server.stop(0);
+	}
+
+	@Benchmark
+	public HtmlPage newWebClient() throws Exception {
+		WebClient client = HtmlUtils.makeWebClient(false);
+		try {
+			return HtmlUtils.getPage(base+page, client);
+		} finally {
+			client.close();
+		}
+	}
+
+	@Benchmark
+	public HtmlPage pooledWebClient() throws Exception {
+		WebClientPool.PooledClient pooled = pool.borrow(false);
+		try {
+			return HtmlUtils.getPage(base+page, pooled.getClient());
+		} finally {
+			pool.release(pooled, true);
+		}
+	}
+
+	@Benchmark
+	public HtmlPage lightFetcher() throws Exception {
+		return light.fetch(base+page);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(FetchBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+
+}
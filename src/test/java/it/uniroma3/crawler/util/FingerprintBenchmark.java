@@ -0,0 +1,75 @@
+package it.uniroma3.crawler.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark of the URL fingerprints computed on the frontier add path,
+ * compared with the former CrawlQueue checksum 
+ * (new MessageDigest, default charset bytes, new String per URL).
+ * <br>
+ * Run with: <i>mvn test-compile exec:java -Dexec.classpathScope=test 
+ * -Dexec.mainClass=it.uniroma3.crawler.util.FingerprintBenchmark</i>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FingerprintBenchmark {
+
+	@Param({"/directory1.html", "/catalog/products/list?category=shoes&page=12&sort=price"})
+	public String url;
+
+	@Setup
+	public void setUp() {
+		FingerprintUtils.sha1(url); // initialize thread-local state
+	}
+
+	@Benchmark
+	public String legacyChecksum() throws NoSuchAlgorithmException {
+		MessageDigest md = MessageDigest.getInstance("SHA");
+		return new String(md.digest(url.getBytes()));
+	}
+
+	@Benchmark
+	public long sha1() {
+		return FingerprintUtils.sha1(url);
+	}
+
+	@Benchmark
+	public long murmur3() {
+		return FingerprintUtils.murmur3(url);
+	}
+
+	@Benchmark
+	public long utf8Bytes() {
+		// baseline: encoding cost of String.getBytes alone
+		return url.getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(FingerprintBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+
+}
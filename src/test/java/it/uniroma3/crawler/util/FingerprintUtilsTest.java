@@ -0,0 +1,48 @@
+package it.uniroma3.crawler.util;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import org.junit.Test;
+
+import com.google.common.hash.Hashing;
+
+public class FingerprintUtilsTest {
+	private final String[] urls = {
+			"", "/", "/test", "/directory?query=true&test=1",
+			"/caffè/中文/😀>search=value;param=value2;",
+			"/a-rather-long-path/with/many/segments/to/cover/more/than/one/block.html"
+	};
+
+	@Test
+	public void testSha1_sameAsMessageDigest() throws Exception {
+		for (String url : urls) {
+			byte[] digest = MessageDigest.getInstance("SHA")
+					.digest(url.getBytes(StandardCharsets.UTF_8));
+			assertEquals(ByteBuffer.wrap(digest).getLong(), FingerprintUtils.sha1(url));
+		}
+	}
+	
+	@Test
+	public void testMurmur3_sameAsGuava() {
+		for (String url : urls) {
+			long expected = Hashing.murmur3_128()
+					.hashBytes(url.getBytes(StandardCharsets.UTF_8)).asLong();
+			assertEquals(expected, FingerprintUtils.murmur3(url));
+		}
+	}
+	
+	@Test
+	public void testSha1_longInput() throws Exception {
+		StringBuilder url = new StringBuilder();
+		for (int i=0;i<1000;i++) url.append("/segment"+i);
+		byte[] digest = MessageDigest.getInstance("SHA")
+				.digest(url.toString().getBytes(StandardCharsets.UTF_8));
+		assertEquals(ByteBuffer.wrap(digest).getLong(), FingerprintUtils.sha1(url));
+		assertEquals(FingerprintUtils.murmur3(url.toString()), FingerprintUtils.murmur3(url));
+	}
+
+}
@@ -0,0 +1,87 @@
+package it.uniroma3.crawler.util;
+
+import static org.junit.Assert.*;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.sun.net.httpserver.HttpServer;
+
+public class LightFetcherTest {
+	private static HttpServer server;
+	private static String base;
+	private static LightFetcher fetcher;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		server = serveTestSite();
+		base = "http://localhost:"+server.getAddress().getPort();
+		fetcher = new LightFetcher(4, 5000);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		fetcher.close();
+		server.stop(0);
+	}
+
+	@Test
+	public void testFetch_sameLinksOfWebClient() throws Exception {
+		String xpath = "//a[not(contains(@href,'external'))]";
+		HtmlPage light = fetcher.fetch(base+"/index.html");
+		List<String> expected;
+		WebClient client = HtmlUtils.makeWebClient();
+		try {
+			HtmlPage full = HtmlUtils.getPage(base+"/index.html", client);
+			expected = XPathUtils.getAbsoluteInternalURLs(full, xpath, base);
+		} finally {
+			client.close();
+		}
+		assertEquals(base+"/index.html", light.getUrl().toString());
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, XPathUtils.getAbsoluteInternalURLs(light, xpath, base));
+	}
+
+	@Test
+	public void testFetch_notHtml() throws Exception {
+		assertNull(fetcher.fetch(base+"/README.md"));
+	}
+
+	/**
+	 * Serves the bundled testsite on an ephemeral port
+	 */
+	static HttpServer serveTestSite() throws Exception {
+		// without it, small responses on keep-alive connections wait for delayed ACKs
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", exchange -> {
+			Path file = Paths.get("testsite", exchange.getRequestURI().getPath());
+			if (Files.isRegularFile(file)) {
+				byte[] body = Files.readAllBytes(file);
+				String type = file.toString().endsWith(".html") ? "text/html" : "text/plain";
+				exchange.getResponseHeaders().add("Content-Type", type+"; charset=UTF-8");
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			}
+			else {
+				exchange.sendResponseHeaders(404, -1);
+				exchange.close();
+			}
+		});
+		server.start();
+		return server;
+	}
+
+}
@@ -0,0 +1,89 @@
+package it.uniroma3.crawler.util;
+
+import static it.uniroma3.crawler.util.HtmlUtils.makeWebClient;
+import static org.junit.Assert.*;
+
+import java.net.URL;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gargoylesoftware.htmlunit.StringWebResponse;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HTMLParser;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+public class PageCacheTest {
+	private WebClient client;
+
+	@Before
+	public void setUp() {
+		client = makeWebClient(false);
+	}
+
+	@After
+	public void tearDown() {
+		client.close();
+	}
+
+	@Test
+	public void testGet_cachedPage() throws Exception {
+		PageCache cache = new PageCache(2, 1024, 60000);
+		HtmlPage page = parse("http://localhost/1", 10);
+		cache.put("http://localhost/1", page);
+		assertSame(page, cache.get("http://localhost/1"));
+		assertNull(cache.get("http://localhost/2"));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testPut_leastRecentlyUsedIsEvicted() throws Exception {
+		PageCache cache = new PageCache(2, 1024, 60000);
+		cache.put("http://localhost/1", parse("http://localhost/1", 10));
+		cache.put("http://localhost/2", parse("http://localhost/2", 10));
+		cache.get("http://localhost/1");
+		cache.put("http://localhost/3", parse("http://localhost/3", 10));
+		assertEquals(2, cache.size());
+		assertNull(cache.get("http://localhost/2"));
+		assertNotNull(cache.get("http://localhost/1"));
+	}
+
+	@Test
+	public void testPut_boundedBySize() throws Exception {
+		PageCache cache = new PageCache(10, 300, 60000);
+		cache.put("http://localhost/1", parse("http://localhost/1", 200));
+		cache.put("http://localhost/2", parse("http://localhost/2", 200));
+		assertEquals(1, cache.size());
+		assertNotNull(cache.get("http://localhost/2"));
+		cache.put("http://localhost/3", parse("http://localhost/3", 400));
+		assertNull(cache.get("http://localhost/3"));
+	}
+
+	@Test
+	public void testGet_expiredPage() throws Exception {
+		PageCache cache = new PageCache(10, 1024, 0);
+		cache.put("http://localhost/1", parse("http://localhost/1", 10));
+		assertNull(cache.get("http://localhost/1"));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testExpire() throws Exception {
+		PageCache cache = new PageCache(10, 1024, 100);
+		cache.put("http://localhost/1", parse("http://localhost/1", 10));
+		Thread.sleep(150);
+		cache.expire();
+		assertEquals(0, cache.size());
+	}
+
+	private HtmlPage parse(String url, int length) throws Exception {
+		StringBuilder text = new StringBuilder();
+		while (text.length()<length) text.append('x');
+		String html = "<html><body>"+text+"</body></html>";
+		return HTMLParser.parseHtml(new StringWebResponse(html, new URL(url)), 
+				client.getCurrentWindow());
+	}
+
+}
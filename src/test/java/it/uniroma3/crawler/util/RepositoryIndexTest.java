@@ -0,0 +1,92 @@
+package it.uniroma3.crawler.util;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RepositoryIndexTest {
+	private Path records, index;
+
+	@Before
+	public void setUp() throws IOException {
+		records = Paths.get("src/main/resources/storage/repository_localhost.csv");
+		index = Paths.get(records+".idx");
+		Files.createDirectories(records.getParent());
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(records);
+		Files.deleteIfExists(index);
+	}
+
+	@Test
+	public void testLookup() throws IOException {
+		RepositoryIndex repository = new RepositoryIndex(records);
+		repository.append("http://localhost/1", "class1", "html/localhost_mirror/1.html");
+		repository.append("http://localhost/2", "class2", "html/localhost_mirror/2.html");
+		assertEquals(2, repository.getPending());
+		repository.close();
+
+		RepositoryIndex reader = new RepositoryIndex(records);
+		RepositoryIndex.Entry entry = reader.lookup("http://localhost/2");
+		assertEquals("http://localhost/2", entry.getUrl());
+		assertEquals("class2", entry.getPageClass());
+		assertEquals("html/localhost_mirror/2.html", entry.getFilePath());
+		assertNull(reader.lookup("http://localhost/3"));
+		assertEquals(2, reader.size());
+	}
+
+	@Test
+	public void testLookup_latestRecord() throws IOException {
+		RepositoryIndex repository = new RepositoryIndex(records);
+		repository.append("http://localhost/1", "class1", "old.html");
+		repository.flush();
+		assertEquals(0, repository.getPending());
+		assertEquals("old.html", repository.lookup("http://localhost/1").getFilePath());
+		repository.append("http://localhost/1", "class1", "new.html");
+		assertEquals("new.html", repository.lookup("http://localhost/1").getFilePath());
+		assertEquals(1, repository.size());
+		repository.close();
+	}
+
+	@Test
+	public void testLookup_indexRebuilt() throws IOException {
+		Files.write(records, ("http://localhost/1\tclass1\t1.html\n"
+				+ "http://localhost/2\tclass2\t2.html\n").getBytes(StandardCharsets.UTF_8));
+		RepositoryIndex repository = new RepositoryIndex(records);
+		assertEquals("2.html", repository.lookup("http://localhost/2").getFilePath());
+		assertTrue(Files.exists(index));
+
+		repository.append("http://localhost/3", "class3", "3.html");
+		repository.close();
+		RepositoryIndex reader = new RepositoryIndex(records);
+		assertEquals("1.html", reader.lookup("http://localhost/1").getFilePath());
+		assertEquals("3.html", reader.lookup("http://localhost/3").getFilePath());
+	}
+
+	@Test
+	public void testForEach_latestRecords() throws IOException {
+		RepositoryIndex repository = new RepositoryIndex(records);
+		repository.append("http://localhost/1", "class1", "old.html");
+		repository.append("http://localhost/2", "class2", "2.html");
+		repository.append("http://localhost/1", "class1", "new.html");
+		repository.close();
+
+		List<String> files = new ArrayList<>();
+		new RepositoryIndex(records).forEach(entry -> files.add(entry.getFilePath()));
+		assertEquals(Arrays.asList("2.html", "new.html"), files);
+	}
+
+}
@@ -0,0 +1,126 @@
+package it.uniroma3.crawler.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class SegmentPageStoreTest {
+	private final String directory = "src/main/resources/storage/store_localhost";
+
+	@After
+	public void tearDown() throws IOException {
+		Path dir = Paths.get(directory);
+		if (!Files.exists(dir)) return;
+		try (Stream<Path> walk = Files.walk(dir)) {
+			walk.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public void testAppend_read() throws IOException {
+		SegmentPageStore store = new SegmentPageStore(directory, 1024*1024);
+		String l1 = store.append("http://localhost/1", page("first"));
+		String l2 = store.append("http://localhost/2", page("second"));
+		assertTrue(SegmentPageStore.isLocator(l1));
+		assertNotEquals(l1, l2);
+		assertArrayEquals(page("first"), SegmentPageStore.read(l1));
+		assertArrayEquals(page("second"), SegmentPageStore.read(l2));
+		assertEquals(l2, store.locate("http://localhost/2"));
+		assertNull(store.locate("http://localhost/3"));
+		store.close();
+	}
+
+	@Test
+	public void testAppend_identicalPagesStoredOnce() throws IOException {
+		SegmentPageStore store = new SegmentPageStore(directory, 1024*1024);
+		String l1 = store.append("http://localhost/1", page("same"));
+		String l2 = store.append("http://localhost/2", page("same"));
+		assertEquals(l1, l2);
+		assertEquals(1, store.getStored());
+		assertEquals(1, store.getDuplicates());
+		store.close();
+
+		SegmentPageStore reopened = new SegmentPageStore(directory, 1024*1024);
+		assertEquals(l1, reopened.append("http://localhost/3", page("same")));
+		assertEquals(l1, reopened.locate("http://localhost/2"));
+		assertEquals(0, reopened.getStored());
+		reopened.close();
+	}
+
+	@Test
+	public void testAppend_segmentsAreRolled() throws IOException {
+		SegmentPageStore store = new SegmentPageStore(directory, 100);
+		String l1 = store.append("http://localhost/1", page("first"));
+		String l2 = store.append("http://localhost/2", page("second"));
+		store.close();
+		assertTrue(l1.contains("pages.0.seg@0"));
+		assertTrue(l2.contains("pages.1.seg@0"));
+
+		SegmentPageStore reopened = new SegmentPageStore(directory, 100);
+		String l3 = reopened.append("http://localhost/3", page("third"));
+		reopened.close();
+		assertTrue(l3.contains("pages.2.seg@0"));
+		assertArrayEquals(page("second"), SegmentPageStore.read(l2));
+	}
+
+	@Test
+	public void testAppend_storesSharingDirectory() throws IOException {
+		SegmentPageStore node1 = new SegmentPageStore(directory, "RepositorySystem1", 1024*1024);
+		SegmentPageStore node2 = new SegmentPageStore(directory, "RepositorySystem2", 1024*1024);
+		String l1 = node1.append("http://localhost/1", page("first"));
+		String l2 = node2.append("http://localhost/2", page("second"));
+		String l3 = node1.append("http://localhost/3", page("third"));
+		node1.close();
+		node2.close();
+		assertTrue(l1.contains("RepositorySystem1.0.seg@0"));
+		assertTrue(l2.contains("RepositorySystem2.0.seg@0"));
+		assertArrayEquals(page("first"), SegmentPageStore.read(l1));
+		assertArrayEquals(page("second"), SegmentPageStore.read(l2));
+		assertArrayEquals(page("third"), SegmentPageStore.read(l3));
+
+		SegmentPageStore reopened = new SegmentPageStore(directory, "RepositorySystem2", 1024*1024);
+		assertEquals(l2, reopened.locate("http://localhost/2"));
+		assertNull(reopened.locate("http://localhost/1"));
+		reopened.close();
+	}
+
+	@Test
+	public void testFlush_indexWritten() throws IOException {
+		SegmentPageStore store = new SegmentPageStore(directory, 1024*1024);
+		store.append("http://localhost/1", page("first"));
+		store.append("http://localhost/2", page("second"));
+		Path index = Paths.get(directory, "pages.idx");
+		assertEquals(0, Files.size(index));
+		store.flush();
+		assertEquals(2*24, Files.size(index)); // fingerprint, hash and locator of each page
+		store.close();
+	}
+
+	@Test(expected=IOException.class)
+	public void testOpen_alreadyOpen() throws IOException {
+		SegmentPageStore store = new SegmentPageStore(directory, 1024*1024);
+		try {
+			new SegmentPageStore(directory, 1024*1024);
+		} finally {
+			store.close();
+		}
+	}
+
+	private byte[] page(String body) {
+		StringBuilder html = new StringBuilder("<html><body>");
+		for (int i=0;i<10;i++)
+			html.append("<p>"+body+" "+i+"</p>");
+		return html.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,115 @@
+package it.uniroma3.crawler.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.WebResponseData;
+import com.gargoylesoftware.htmlunit.util.NameValuePair;
+
+public class WarcWriterTest {
+	private final String directory = "src/main/resources/storage/warc_localhost";
+
+	@After
+	public void tearDown() throws IOException {
+		Path dir = Paths.get(directory);
+		if (!Files.exists(dir)) return;
+		try (Stream<Path> walk = Files.walk(dir)) {
+			walk.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public void testWrite_recordsAndIndex() throws IOException {
+		WarcWriter writer = new WarcWriter(directory, "test", 1024*1024);
+		writer.write(response("http://localhost:8080/page?id=1", "<html>one</html>"));
+		writer.write(response("http://localhost:8080/page?id=2", "<html>two</html>"));
+		writer.close();
+
+		List<String> cdx = Files.readAllLines(Paths.get(directory, "test.cdx"));
+		assertEquals(3, cdx.size());
+		assertEquals(" CDX N b a m s k S V g", cdx.get(0));
+		String[] fields = cdx.get(2).split(" ");
+		assertEquals("localhost:8080)/page?id=2", fields[0]);
+		assertEquals("http://localhost:8080/page?id=2", fields[2]);
+		assertEquals("text/html", fields[3]);
+		assertEquals("200", fields[4]);
+
+		// each record is a gzip member, readable from its offset
+		byte[] warc = Files.readAllBytes(Paths.get(directory, fields[8]));
+		int offset = Integer.parseInt(fields[7]), length = Integer.parseInt(fields[6]);
+		String record = gunzip(Arrays.copyOfRange(warc, offset, offset+length));
+		assertTrue(record.startsWith("WARC/1.0\r\nWARC-Type: response\r\n"));
+		assertTrue(record.contains("WARC-Target-URI: http://localhost:8080/page?id=2\r\n"));
+		assertTrue(record.contains("HTTP/1.1 200 OK\r\n"));
+		assertTrue(record.contains("<html>two</html>"));
+		assertFalse(record.contains("Transfer-Encoding"));
+		assertTrue(record.contains("Content-Length: 16\r\n"));
+
+		List<String> types = new ArrayList<>();
+		for (String line : gunzip(warc).split("\r\n"))
+			if (line.startsWith("WARC-Type: ")) types.add(line.substring(11));
+		assertEquals(Arrays.asList("warcinfo", "response", "request", "response", "request"), types);
+	}
+
+	@Test
+	public void testWrite_filesAreRolled() throws IOException {
+		WarcWriter writer = new WarcWriter(directory, "test", 100);
+		writer.write(response("http://localhost/1", "<html>one</html>"));
+		writer.write(response("http://localhost/2", "<html>two</html>"));
+		writer.close();
+		try (Stream<Path> files = Files.list(Paths.get(directory))) {
+			assertEquals(2, files.filter(p -> p.toString().endsWith(".warc.gz")).count());
+		}
+	}
+
+	@Test
+	public void testWrite_indexedBeforeClose() throws IOException {
+		WarcWriter writer = new WarcWriter(directory, "test", 1024*1024);
+		writer.write(response("http://localhost/1", "<html>one</html>"));
+		List<String> cdx = Files.readAllLines(Paths.get(directory, "test.cdx"));
+		assertEquals(2, cdx.size());
+		assertEquals("http://localhost/1", cdx.get(1).split(" ")[2]);
+		writer.close();
+	}
+
+	@Test
+	public void testUrlKey() throws IOException {
+		assertEquals("com,example)/a/b?q=1", WarcWriter.urlKey(new URL("http://www.Example.com/a/b?q=1")));
+		assertEquals("com,example)/", WarcWriter.urlKey(new URL("http://example.com")));
+	}
+
+	private WebResponse response(String url, String body) throws IOException {
+		List<NameValuePair> headers = Arrays.asList(
+				new NameValuePair("Content-Type", "text/html"),
+				new NameValuePair("Transfer-Encoding", "chunked"));
+		return new WebResponse(new WebResponseData(body.getBytes(StandardCharsets.UTF_8), 200, "OK",
+				headers), new WebRequest(new URL(url)), 0);
+	}
+
+	private String gunzip(byte[] data) throws IOException {
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+			return IOUtils.toString(in, StandardCharsets.UTF_8);
+		}
+	}
+
+}
@@ -0,0 +1,56 @@
+package it.uniroma3.crawler.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WebClientPoolTest {
+	private WebClientPool pool;
+
+	@Before
+	public void setUp() {
+		pool = new WebClientPool(1, 2, 60000);
+	}
+
+	@After
+	public void tearDown() {
+		pool.close();
+	}
+
+	@Test
+	public void testBorrow_reusesReleasedClient() {
+		WebClientPool.PooledClient first = pool.borrow(false);
+		pool.release(first, true);
+		assertEquals(1, pool.getIdleCount(false));
+		assertSame(first, pool.borrow(false));
+		assertEquals(0, pool.getIdleCount(false));
+	}
+
+	@Test
+	public void testBorrow_keyedByJavaScript() {
+		WebClientPool.PooledClient plain = pool.borrow(false);
+		pool.release(plain, true);
+		WebClientPool.PooledClient js = pool.borrow(true);
+		assertNotSame(plain, js);
+		assertTrue(js.getClient().getOptions().isJavaScriptEnabled());
+		pool.release(js, true);
+	}
+
+	@Test
+	public void testRelease_unhealthyClientIsDiscarded() {
+		pool.release(pool.borrow(false), false);
+		assertEquals(0, pool.getIdleCount(false));
+	}
+
+	@Test
+	public void testRelease_clientIsRecycledAfterMaxUses() {
+		WebClientPool.PooledClient first = pool.borrow(false);
+		pool.release(first, true);
+		pool.release(pool.borrow(false), true); // second use
+		assertEquals(0, pool.getIdleCount(false));
+		assertNotSame(first, pool.borrow(false));
+	}
+
+}